@@ -0,0 +1,117 @@
+package com.example.chess.benchmarks;
+
+import com.example.chess.dto.MoveDTO;
+import com.example.chess.entity.Game;
+import com.example.chess.entity.GameFeatures;
+import com.example.chess.entity.History;
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.MoveHelper;
+import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.move.ExtendedMove;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Фиксированный набор позиций для бенчмарков. Позиция задается партией (ходы в формате MoveDTO.valueOf(): "e2-e4"),
+ * которая разыгрывается от начальной расстановки - так заодно есть история ходов для CellsMatrix.ofHistory().
+ * Каждый ход проверяется MoveHelper-ом: опечатка в партии сразу дает IllegalArgumentException, а не тихо другую позицию.
+ * <p>
+ * Имена позиций - значения @Param("...") в бенчмарках.
+ */
+public enum BenchmarkPosition {
+
+    //испанская партия: дебют, все фигуры на доске
+    OPENING("e2-e4 e7-e5 g1-f3 b8-c6 f1-b5 a7-a6 b5-a4 g8-f6 e1-g1 f8-e7"),
+
+    //ферзевый гамбит, освобождающая схема Капабланки: спокойный миттельшпиль после разменов
+    MIDDLEGAME("d2-d4 d7-d5 c2-c4 e7-e6 b1-c3 g8-f6 c1-g5 f8-e7 e2-e3 e8-g8 g1-f3 b8-d7 a1-c1 c7-c6 f1-d3 d5-c4 "
+            + "d3-c4 f6-d5 g5-e7 d8-e7 e1-g1 d5-c3 c1-c3 e6-e5"),
+
+    //сицилианская защита (английская атака): разносторонние рокировки, много взятий и шахов в переборе
+    TACTICAL("e2-e4 c7-c5 g1-f3 d7-d6 d2-d4 c5-d4 f3-d4 g8-f6 b1-c3 a7-a6 c1-e3 e7-e5 d4-b3 c8-e6 f2-f3 f8-e7 "
+            + "d1-d2 e8-g8 e1-c1 b8-d7 g2-g4 b7-b5 g4-g5 b5-b4");
+
+    private final List<History> history;
+    private final CellsMatrix matrix;
+    private final FakeGame game;
+    private final ExtendedMove lastMove;
+
+    BenchmarkPosition(String moves) {
+        List<History> history = new ArrayList<>();
+        CellsMatrix matrix = CellsMatrix.ofHistory(0, Collections.emptyList());
+        FakeGame game = FakeGame.ofGame(newGame());
+        ExtendedMove lastMove = null;
+
+        for (String moveStr : moves.split(" ")) {
+            MoveDTO moveDTO = MoveDTO.valueOf(moveStr);
+            Side side = Side.getNextTurnSideByPosition(matrix.getPosition());
+
+            ExtendedMove move = MoveHelper.valueOf(game, matrix)
+                    .getStandardMovesStream(side)
+                    .filter(available -> available.getPointFrom() == moveDTO.getPointFrom() && available.getPointTo() == moveDTO.getPointTo())
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Illegal move " + moveStr + " in " + moves));
+
+            Piece pieceFrom = move.getFrom().getPiece();
+            //как в GameServiceImpl: в истории - позиция ПОСЛЕ хода
+            history.add(moveDTO.toHistory(0L, matrix.getPosition() + 1, pieceFrom));
+            game = game.executeMove(move, pieceFrom);
+            matrix = matrix.executeMove(move);
+            lastMove = move;
+        }
+
+        this.history = Collections.unmodifiableList(history);
+        this.matrix = matrix;
+        this.game = game;
+        this.lastMove = lastMove;
+    }
+
+    public List<History> getHistory() {
+        return history;
+    }
+
+    public CellsMatrix getMatrix() {
+        return matrix;
+    }
+
+    public FakeGame getGame() {
+        return game;
+    }
+
+    public ExtendedMove getLastMove() {
+        return lastMove;
+    }
+
+    public Side getNextTurnSide() {
+        return Side.getNextTurnSideByPosition(matrix.getPosition());
+    }
+
+    /**
+     * Партия-сущность в этой позиции (без id: бот не будет искать ее pondering и дерево прошлого хода)
+     */
+    public Game toGame() {
+        Game entity = newGame();
+        entity.setPosition(matrix.getPosition());
+
+        for (Side side : Side.values()) {
+            GameFeatures features = entity.getSideFeatures(side);
+            features.setShortCastlingAvailable(game.isShortCastlingAvailable(side));
+            features.setLongCastlingAvailable(game.isLongCastlingAvailable(side));
+            features.setPawnLongMoveColumnIndex(game.getPawnLongMoveColumnIndex(side));
+        }
+        return entity;
+    }
+
+    /**
+     * Новая партия: обе рокировки доступны, длинных ходов пешек не было
+     */
+    private static Game newGame() {
+        Game game = new Game();
+        game.clearFuturesMap();
+        return game;
+    }
+}
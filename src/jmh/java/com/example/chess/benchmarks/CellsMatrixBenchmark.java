@@ -0,0 +1,74 @@
+package com.example.chess.benchmarks;
+
+import com.example.chess.entity.History;
+import com.example.chess.entity.PositionSnapshot;
+import com.example.chess.logic.MoveHelper;
+import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.move.ExtendedMove;
+import com.example.chess.service.impl.GameServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * CellsMatrix: копия доски на каждый ход (executeMove(), так растет дерево GameContext)
+ * и восстановление позиции партии из истории: ofHistory() - со стартовой расстановки через все ходы,
+ * ofSnapshot() - с последнего снапшота через хвост истории (так ее строит GameService.createCellsMatrixByGame() на каждый запрос)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CellsMatrixBenchmark {
+
+    @Param({"OPENING", "MIDDLEGAME", "TACTICAL"})
+    private BenchmarkPosition position;
+
+    private CellsMatrix matrix;
+    private List<ExtendedMove> moves;
+    private List<History> history;
+    private PositionSnapshot snapshot;
+    private List<History> tail;
+
+    @Setup
+    public void setUp() {
+        matrix = position.getMatrix();
+        moves = MoveHelper.valueOf(position.getGame(), matrix)
+                .getStandardMovesStream(position.getNextTurnSide())
+                .collect(Collectors.toList());
+        history = position.getHistory();
+
+        int snapshotPosition = history.size() - history.size() % GameServiceImpl.SNAPSHOT_INTERVAL;
+        snapshot = PositionSnapshot.of(0L, CellsMatrix.ofHistory(snapshotPosition, history.subList(0, snapshotPosition)));
+        tail = history.subList(snapshotPosition, history.size());
+    }
+
+    /**
+     * Все ходы позиции - одна операция (как при заполнении детей одного узла)
+     */
+    @Benchmark
+    public void executeMove(Blackhole blackhole) {
+        for (ExtendedMove move : moves) {
+            blackhole.consume(matrix.executeMove(move));
+        }
+    }
+
+    @Benchmark
+    public CellsMatrix ofHistory() {
+        return CellsMatrix.ofHistory(history.size(), history);
+    }
+
+    @Benchmark
+    public CellsMatrix ofSnapshot() {
+        return CellsMatrix.ofSnapshot(history.size(), snapshot, tail);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.chess.benchmarks;
+
+import com.example.chess.logic.objects.game.GameContext;
+import com.example.chess.logic.objects.game.RootGameContext;
+import com.example.chess.service.impl.bot.MaterialRatingCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * MaterialRatingCalculator.getMaterialRating() для всех ходов бота из позиции (одна операция),
+ * как его зовет BotServiceImplMedium. Дерево (ход бота + ответы игрока) строится один раз в setUp() и в замер не входит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MaterialRatingBenchmark {
+
+    @Param({"OPENING", "MIDDLEGAME", "TACTICAL"})
+    private BenchmarkPosition position;
+
+    private List<GameContext> botMoves;
+
+    @Setup
+    public void setUp() {
+        RootGameContext rootContext = RootGameContext.of(position.toGame(), position.getMatrix(), position.getLastMove(),
+                position.getNextTurnSide());
+        rootContext.fill(2, new AtomicBoolean());
+
+        botMoves = rootContext.childrenStream().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void getMaterialRating(Blackhole blackhole) {
+        for (GameContext botMove : botMoves) {
+            blackhole.consume(MaterialRatingCalculator.getMaterialRating(botMove, false));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.chess.benchmarks;
+
+import com.example.chess.enums.MoveGenerationStrategy;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.MoveHelper;
+import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.move.ExtendedMove;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * MoveHelper: генерация всех легальных ходов стороны и проверка шаха - то, что GameContext делает в каждом узле дерева.
+ * MoveHelper.valueOf() входит в замер (для ATTACK_TABLES там же строится битборд), т.к. вызывающий код создает его на каждую позицию.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MoveGenerationBenchmark {
+
+    @Param({"OPENING", "MIDDLEGAME", "TACTICAL"})
+    private BenchmarkPosition position;
+
+    @Param({"VECTOR", "ATTACK_TABLES"})
+    private MoveGenerationStrategy strategy;
+
+    private CellsMatrix matrix;
+    private FakeGame game;
+    private Side side;
+
+    @Setup
+    public void setUp() {
+        matrix = position.getMatrix();
+        game = position.getGame();
+        side = position.getNextTurnSide();
+    }
+
+    @Benchmark
+    public List<ExtendedMove> getStandardMovesStream() {
+        return MoveHelper.valueOf(game, matrix, strategy)
+                .getStandardMovesStream(side)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public boolean isKingUnderAttack() {
+        return MoveHelper.valueOf(game, matrix, strategy).isKingUnderAttack(side);
+    }
+}
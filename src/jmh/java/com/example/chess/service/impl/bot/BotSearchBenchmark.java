@@ -0,0 +1,89 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.benchmarks.BenchmarkPosition;
+import com.example.chess.dto.MoveDTO;
+import com.example.chess.logic.objects.game.RootGameContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Полный поиск хода бота (AbstractBotService.findBestMove()) по набору позиций - то, что раньше замерялось вручную
+ * (measurement_#*.txt). Лежит в пакете бота, т.к. findBestMove() - protected.
+ * <p>
+ * Один поток перебора и фиксированная глубина без бюджета времени (иначе результат - это бюджет, а не скорость).
+ * Таблица транспозиций создается заново перед каждым поиском: иначе каждый следующий поиск находил бы в ней ответ предыдущего
+ * (ее TT_SIZE_MB попадают и в gc.alloc.rate.norm).
+ * <p>
+ * medium считает детей корня в searchPool, а gc.alloc.rate.norm видит только поток бенчмарка - для него смотреть gc.churn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(time = 5)
+@Measurement(time = 5)
+public class BotSearchBenchmark {
+
+    private static final int TT_SIZE_MB = 16;
+
+    @Param({"OPENING", "MIDDLEGAME", "TACTICAL"})
+    private BenchmarkPosition position;
+
+    //hard - AlphaBetaSearch, medium - legacy-дерево GameContext (глубина у него всегда MAX_DEEP)
+    @Param({"hard", "medium"})
+    private String implementation;
+
+    //глубина итеративного углубления для hard
+    @Param("8")
+    private int depth;
+
+    private AbstractBotService botService;
+    private RootGameContext rootContext;
+
+    @Setup(Level.Trial)
+    public void setUpBot() {
+        if ("hard".equals(implementation)) {
+            BotServiceImplHard hard = new BotServiceImplHard();
+            hard.setSearchDepth(depth);
+            hard.setTimePerMove(0L);
+            hard.setPonderEnabled(false);
+            hard.setNullMoveEnabled(true);
+            hard.setLateMoveReductionEnabled(true);
+            hard.setFutilityPruningEnabled(true);
+            botService = hard;
+        } else {
+            botService = new BotServiceImplMedium();
+        }
+        botService.setThreads(1);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpSearch() {
+        botService.setTranspositionTableSize(TT_SIZE_MB);
+        //дерево GameContext (medium) заполняется поиском, поэтому корень - тоже новый на каждый поиск
+        rootContext = RootGameContext.of(position.toGame(), position.getMatrix(), position.getLastMove(),
+                position.getNextTurnSide(), botService.transpositionTable);
+    }
+
+    @Benchmark
+    public MoveDTO findBestMove() {
+        return botService.findBestMove(rootContext, new AtomicBoolean());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        botService.searchPool.shutdown();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.chess.aspects.advice;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Гистограмма времени выполнения одного метода (в наносекундах).
+ * <p>
+ * Пишут в нее все потоки сразу (потоки бота, http-потоки): Recorder.recordValue() - wait-free, без блокировок и без общей
+ * для всех вызовов атомарной переменной, так что замер не выстраивает потоки в очередь. Читатель (дамп, endpoint) забирает
+ * накопленное через getIntervalHistogram() и складывает в общую гистограмму - под своим локом, писателей он не останавливает.
+ */
+class MethodProfile {
+
+	//3 значащие цифры: погрешность перцентилей - 0.1%
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	@Getter
+	private final String name;
+	private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+	private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+	private Histogram interval;
+	private long dumpedCount;
+
+	MethodProfile(String name) {
+		this.name = name;
+	}
+
+	void record(long nanos) {
+		recorder.recordValue(nanos);
+	}
+
+	/**
+	 * Все замеры с момента старта
+	 */
+	synchronized Summary getSummary() {
+		interval = recorder.getIntervalHistogram(interval);
+		total.add(interval);
+		return new Summary(total);
+	}
+
+	/**
+	 * То же, что getSummary(), но null - если с прошлого вызова новых замеров не было (чтобы дамп не повторял одно и то же)
+	 */
+	synchronized Summary getSummaryIfChanged() {
+		Summary summary = getSummary();
+		if (summary.getCount() == dumpedCount) {
+			return null;
+		}
+		dumpedCount = summary.getCount();
+		return summary;
+	}
+
+	/**
+	 * Время - в микросекундах
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class Summary {
+
+		private final long count;
+		private final double mean;
+		private final double p50;
+		private final double p99;
+		private final double max;
+
+		private Summary(Histogram histogram) {
+			this(histogram.getTotalCount(),
+					toMicros(histogram.getMean()),
+					toMicros(histogram.getValueAtPercentile(50)),
+					toMicros(histogram.getValueAtPercentile(99)),
+					toMicros(histogram.getMaxValue()));
+		}
+
+		private static double toMicros(double nanos) {
+			return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+		}
+
+		@Override
+		public String toString() {
+			return "count = " + count + ", mean = " + format(mean) + ", p50 = " + format(p50) + ", p99 = " + format(p99)
+					+ ", max = " + format(max) + " (us)";
+		}
+
+		private static String format(double micros) {
+			return String.format("%.1f", micros);
+		}
+	}
+}
@@ -6,34 +6,117 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Профилирование методов с @Profile: System.nanoTime() вокруг вызова, результат - в гистограмму метода (см. MethodProfile).
+ * На каждый вызов ничего не логируется: сводка (p50/p99/max) пишется в лог раз в app.profile.dump-period-sec
+ * и отдается на /actuator/profile (см. ProfileEndpoint).
+ * <p>
+ * app.profile.enabled=false - методы вызываются как есть, без замера.
+ */
 @Log4j2
 @Aspect
 @Component
 public class ProfileAdvice {
 
-	//FIXME: not working with multithreading;
-	@Around("@annotation(com.example.chess.aspects.Profile)")
-	public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable {
-		long start = System.currentTimeMillis();
+	private final boolean isEnabled;
+	private final ConcurrentHashMap<Method, MethodProfile> profiles = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService dumpExecutor;
 
-		Object proceed = joinPoint.proceed();
+	/**
+	 * @param dumpPeriodSec как часто писать сводку в лог. 0 - не писать (остается только endpoint)
+	 */
+	public ProfileAdvice(@Value("${app.profile.enabled:true}") boolean isEnabled,
+						 @Value("${app.profile.dump-period-sec:60}") long dumpPeriodSec) {
 
-		long executionTime = System.currentTimeMillis() - start;
+		this.isEnabled = isEnabled;
 
-		MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+		if (isEnabled && dumpPeriodSec > 0) {
+			dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "profile-dump");
+				thread.setDaemon(true);
+				return thread;
+			});
+			dumpExecutor.scheduleAtFixedRate(this::dump, dumpPeriodSec, dumpPeriodSec, TimeUnit.SECONDS);
+		} else {
+			dumpExecutor = null;
+		}
+	}
+
+	@Around(value = "@annotation(profile)", argNames = "joinPoint,profile")
+	public Object logExecutionTime(ProceedingJoinPoint joinPoint, Profile profile) throws Throwable {
+		if (!isEnabled || !isSampled(profile)) {
+			return joinPoint.proceed();
+		}
+
+		long start = System.nanoTime();
+		try {
+			return joinPoint.proceed();
+		} finally {
+			long executionTime = System.nanoTime() - start;
+			getProfile((MethodSignature) joinPoint.getSignature(), profile).record(executionTime);
+		}
+	}
+
+	private static boolean isSampled(Profile profile) {
+		//ThreadLocalRandom, а не общий счетчик вызовов: у каждого потока свой, потоки друг другу не мешают
+		return profile.sampleRate() <= 1 || ThreadLocalRandom.current().nextInt(profile.sampleRate()) == 0;
+	}
+
+	private MethodProfile getProfile(MethodSignature signature, Profile profile) {
 		Method method = signature.getMethod();
-		Profile profile = method.getAnnotation(Profile.class);
+		//сначала get(): computeIfAbsent() в java 8 блокирует бакет даже когда ключ уже есть
+		MethodProfile methodProfile = profiles.get(method);
+		if (methodProfile == null) {
+			methodProfile = profiles.computeIfAbsent(method, key -> new MethodProfile(getSignatureText(signature, profile)));
+		}
+		return methodProfile;
+	}
 
+	private static String getSignatureText(MethodSignature signature, Profile profile) {
 		String signatureText = signature.getDeclaringType().getSimpleName() + "." + signature.getName();
 		if (profile.showMethodArgsCount()) {
-			signatureText = signatureText + "[" + +signature.getMethod().getParameterCount() + "]";
+			signatureText = signatureText + "[" + signature.getMethod().getParameterCount() + "]";
+		}
+		return signatureText;
+	}
+
+	/**
+	 * Сводка по всем методам с момента старта: сигнатура -> время выполнения
+	 */
+	public Map<String, MethodProfile.Summary> getSummaries() {
+		Map<String, MethodProfile.Summary> result = new TreeMap<>();
+		for (MethodProfile methodProfile : profiles.values()) {
+			result.put(methodProfile.getName(), methodProfile.getSummary());
 		}
-		log.info("<" + signatureText + "> executed in " + executionTime + "ms");
+		return result;
+	}
 
-		return proceed;
+	private void dump() {
+		for (MethodProfile methodProfile : profiles.values()) {
+			MethodProfile.Summary summary = methodProfile.getSummaryIfChanged();
+			if (summary != null) {
+				log.info("<" + methodProfile.getName() + "> " + summary);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (dumpExecutor != null) {
+			dumpExecutor.shutdownNow();
+		}
 	}
 }
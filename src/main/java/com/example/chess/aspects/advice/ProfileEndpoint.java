@@ -0,0 +1,26 @@
+package com.example.chess.aspects.advice;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/profile: время выполнения методов с @Profile (count, mean, p50, p99, max в микросекундах) с момента старта
+ */
+@Component
+@Endpoint(id = "profile")
+public class ProfileEndpoint {
+
+	private final ProfileAdvice profileAdvice;
+
+	public ProfileEndpoint(ProfileAdvice profileAdvice) {
+		this.profileAdvice = profileAdvice;
+	}
+
+	@ReadOperation
+	public Map<String, MethodProfile.Summary> profile() {
+		return profileAdvice.getSummaries();
+	}
+}
@@ -3,7 +3,7 @@ package com.example.chess.dto;
 import com.example.chess.entity.History;
 import com.example.chess.enums.Piece;
 import com.example.chess.enums.PieceType;
-import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.IMatrix;
 import com.example.chess.logic.objects.move.ExtendedMove;
 import com.example.chess.logic.objects.move.Move;
 import com.example.chess.logic.utils.Immutable;
@@ -101,7 +101,7 @@ public final class MoveDTO implements Move, Immutable {
     }
 
     @JsonIgnore
-    public ExtendedMove toExtendedMove(CellsMatrix matrix) {
-        return new ExtendedMove(matrix.getCell(from), matrix.getCell(to));
+    public ExtendedMove toExtendedMove(IMatrix matrix) {
+        return new ExtendedMove(matrix.getCell(from), matrix.getCell(to), pieceFromPawn);
     }
 }
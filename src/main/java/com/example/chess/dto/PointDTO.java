@@ -36,6 +36,13 @@ public final class PointDTO implements Immutable {
         return pointsArray[rowIndex][columnIndex];
     }
 
+    /**
+     * Не varargs-версия для горячих мест (MoveHelper): не создает массив на каждый вызов
+     */
+    public static boolean isCorrectIndex(int rowIndex, int columnIndex) {
+        return rowIndex >= 0 && rowIndex < BOARD_SIZE && columnIndex >= 0 && columnIndex < BOARD_SIZE;
+    }
+
     public static boolean isCorrectIndex(int... indexes) {
         for (int index : indexes) {
             if (index < 0 || index >= 8) {
@@ -3,7 +3,7 @@ package com.example.chess.entity;
 import com.example.chess.dto.CellDTO;
 import com.example.chess.dto.PointDTO;
 import com.example.chess.enums.PieceType;
-import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.IMatrix;
 import com.example.chess.logic.objects.move.ExtendedMove;
 import com.example.chess.logic.objects.move.Move;
 import lombok.*;
@@ -61,10 +61,10 @@ public class History implements Move {
     }
 
     @Transient
-    public ExtendedMove toExtendedMove(CellsMatrix matrix) {
+    public ExtendedMove toExtendedMove(IMatrix matrix) {
         CellDTO from = matrix.getCell(getPointFrom());
         CellDTO to = matrix.getCell(getPointTo());
-        return new ExtendedMove(from, to);
+        return new ExtendedMove(from, to, pieceFromPawn);
     }
 
     @Transient
@@ -0,0 +1,78 @@
+package com.example.chess.entity;
+
+import com.example.chess.enums.Piece;
+import com.example.chess.logic.objects.IMatrix;
+import com.google.common.base.Preconditions;
+import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+
+import static com.example.chess.logic.ChessConstants.BOARD_SIZE;
+
+/**
+ * Расстановка фигур партии на позиции position (после хода history.position == position).
+ * Сохраняется раз в несколько ходов (см. GameServiceImpl.SNAPSHOT_INTERVAL), чтобы восстанавливать доску
+ * не со стартовой расстановки через всю историю, а с ближайшего снапшота через несколько последних ходов.
+ * <p>
+ * arrangement - 64 символа, по клетке на символ (строка за строкой, начиная с rowIndex = 0):
+ * фигура - буквой как в FEN (PNBRQK - белые, pnbrqk - черные), пустая клетка - '.'
+ */
+@Entity
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class PositionSnapshot {
+
+    //в порядке Piece.values()
+    private static final String PIECE_CODES = "PNBRQKpnbrqk";
+    private static final char EMPTY_CODE = '.';
+    //обратная таблица: код -> фигура (getPiece() зовется на каждую клетку при восстановлении доски)
+    private static final Piece[] PIECES_BY_CODE = new Piece[128];
+
+    static {
+        for (Piece piece : Piece.values()) {
+            PIECES_BY_CODE[PIECE_CODES.charAt(piece.ordinal())] = piece;
+        }
+    }
+
+    @Id
+    @GenericGenerator(name = "position_snapshot_id_seq", strategy = "sequence-identity", parameters = @org.hibernate.annotations.Parameter(name = "sequence", value = "position_snapshot_id_seq"))
+    @GeneratedValue(generator = "position_snapshot_id_seq")
+    private long id;
+
+    @Column(nullable = false)
+    private long gameId;
+
+    @Column(nullable = false)
+    private int position;
+
+    @Column(nullable = false, length = BOARD_SIZE * BOARD_SIZE)
+    private String arrangement;
+
+    public static PositionSnapshot of(long gameId, IMatrix matrix) {
+        StringBuilder arrangement = new StringBuilder(BOARD_SIZE * BOARD_SIZE);
+        for (int rowIndex = 0; rowIndex < BOARD_SIZE; rowIndex++) {
+            for (int columnIndex = 0; columnIndex < BOARD_SIZE; columnIndex++) {
+                Piece piece = matrix.getCell(rowIndex, columnIndex).getPiece();
+                arrangement.append(piece == null ? EMPTY_CODE : PIECE_CODES.charAt(piece.ordinal()));
+            }
+        }
+        return new PositionSnapshot(0, gameId, matrix.getPosition(), arrangement.toString());
+    }
+
+    /**
+     * @return фигура на клетке или null (подходит как pieceGenerator для CellsMatrix)
+     */
+    @Transient
+    public Piece getPiece(int rowIndex, int columnIndex) {
+        char code = arrangement.charAt(rowIndex * BOARD_SIZE + columnIndex);
+        if (code == EMPTY_CODE) {
+            return null;
+        }
+        Piece piece = code < PIECES_BY_CODE.length ? PIECES_BY_CODE[code] : null;
+        Preconditions.checkState(piece != null, "Unknown piece code: " + code);
+        return piece;
+    }
+}
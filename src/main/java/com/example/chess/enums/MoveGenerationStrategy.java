@@ -0,0 +1,15 @@
+package com.example.chess.enums;
+
+/**
+ * Способ поиска ходов в MoveHelper.
+ */
+public enum MoveGenerationStrategy {
+    /**
+     * Шагаем по лучам клетка за клеткой (исходная реализация)
+     */
+    VECTOR,
+    /**
+     * Предвычисленные таблицы атак (конь, король) и magic bitboards (слон, ладья, ферзь)
+     */
+    ATTACK_TABLES
+}
@@ -0,0 +1,11 @@
+package com.example.chess.exceptions;
+
+/**
+ * Очередь ходов бота заполнена (см. BotScheduler): ход бота не будет посчитан, запрос нужно повторить позже
+ */
+public class BotBusyException extends ChessException {
+
+	public BotBusyException(String message) {
+		super(message);
+	}
+}
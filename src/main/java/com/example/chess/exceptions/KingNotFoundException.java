@@ -1,7 +1,7 @@
 package com.example.chess.exceptions;
 
 import com.example.chess.enums.Side;
-import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.IMatrix;
 import com.example.chess.logic.objects.move.ExtendedMove;
 import com.example.chess.logic.utils.CommonUtils;
 import lombok.Getter;
@@ -14,13 +14,13 @@ import lombok.extern.log4j.Log4j2;
 public class KingNotFoundException extends RuntimeException {
 
     private Side kingSide;
-    private CellsMatrix originalMatrix;
+    private IMatrix originalMatrix;
     private ExtendedMove analyzedMove;
-    private CellsMatrix prevMatrix;
+    private IMatrix prevMatrix;
     private ExtendedMove prevMove;
-    private CellsMatrix errorMatrix;
+    private IMatrix errorMatrix;
 
-    public KingNotFoundException(CellsMatrix errorMatrix, Side kingSide) {
+    public KingNotFoundException(IMatrix errorMatrix, Side kingSide) {
         this.errorMatrix = errorMatrix;
         this.kingSide = kingSide;
     }
@@ -2,11 +2,17 @@ package com.example.chess.logic;
 
 import com.example.chess.dto.CellDTO;
 import com.example.chess.dto.PointDTO;
+import com.example.chess.enums.MoveGenerationStrategy;
 import com.example.chess.enums.PieceType;
 import com.example.chess.enums.Side;
 import com.example.chess.exceptions.KingNotFoundException;
-import com.example.chess.logic.debug.Debug;
-import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.bitboard.AttackTables;
+import com.example.chess.logic.bitboard.MoveGenerator;
+import com.example.chess.logic.bitboard.MoveList;
+import com.example.chess.logic.bitboard.PackedMove;
+import com.example.chess.logic.objects.BitboardMatrix;
+import com.example.chess.logic.objects.IBitboardMatrix;
+import com.example.chess.logic.objects.IMatrix;
 import com.example.chess.logic.objects.game.GameContext;
 import com.example.chess.logic.objects.game.IGame;
 import com.example.chess.logic.objects.move.ExtendedMove;
@@ -22,28 +28,50 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.example.chess.logic.ChessConstants.ROOK_LONG_COLUMN_INDEX;
+import static com.example.chess.logic.ChessConstants.ROOK_SHORT_COLUMN_INDEX;
+import static com.example.chess.logic.bitboard.Bitboards.point;
+import static com.example.chess.logic.bitboard.Bitboards.square;
+
 @SuppressWarnings({"ConstantConditions", "Duplicates"})
 public class MoveHelper {
 
+    public static final MoveGenerationStrategy DEFAULT_STRATEGY = MoveGenerationStrategy.ATTACK_TABLES;
+
     private final IGame game;
-    private final CellsMatrix matrix;
+    private final IMatrix matrix;
+    private final IBitboardMatrix bitboard;  //not null only for MoveGenerationStrategy.ATTACK_TABLES
 
-    private MoveHelper(IGame game, CellsMatrix matrix) {
+    private MoveHelper(IGame game, IMatrix matrix, MoveGenerationStrategy strategy) {
         this.game = game;
         this.matrix = matrix;
+        this.bitboard = strategy == MoveGenerationStrategy.ATTACK_TABLES ? toBitboard(matrix) : null;
+    }
+
+    private static IBitboardMatrix toBitboard(IMatrix matrix) {
+        if (matrix instanceof IBitboardMatrix) {
+            return (IBitboardMatrix) matrix;
+        }
+        return BitboardMatrix.of(matrix);
     }
 
-    public static MoveHelper valueOf(IGame fakeGame, CellsMatrix matrix) {
-        Debug.moveHelpersCount.incrementAndGet();
-        return new MoveHelper(fakeGame, matrix);
+    public static MoveHelper valueOf(IGame fakeGame, IMatrix matrix) {
+        return valueOf(fakeGame, matrix, DEFAULT_STRATEGY);
+    }
+
+    public static MoveHelper valueOf(IGame fakeGame, IMatrix matrix, MoveGenerationStrategy strategy) {
+        return new MoveHelper(fakeGame, matrix, strategy);
     }
 
     public static MoveHelper valueOf(GameContext context) {
-        Debug.moveHelpersCount.incrementAndGet();
-        return new MoveHelper(context.getGame(), context.getMatrix());
+        return valueOf(context.getGame(), context.getMatrix());
     }
 
     public boolean isKingUnderAttack(Side kingSide) {
+        if (bitboard != null) {
+            return bitboard.isUnderCheck(kingSide);
+        }
+
         PointDTO kingPoint = matrix.getKingPoint(kingSide);
         Side enemySide = kingSide.reverse();
 
@@ -58,22 +86,55 @@ public class MoveHelper {
 
     public Set<PointDTO> getFilteredAvailablePoints(PointDTO pointFrom) {
         CellDTO moveableCell = matrix.getCell(pointFrom);
+
+        if (bitboard != null) {
+            moveableCell.requireNotEmpty();
+            int squareFrom = square(pointFrom);
+
+            MoveList moves = new MoveList();
+            MoveGenerator.generateLegalMoves(bitboard, game, moveableCell.getSide(), moves);
+            return moves.stream()
+                    .filter(move -> PackedMove.from(move) == squareFrom)
+                    .mapToObj(move -> point(PackedMove.to(move)))
+                    .collect(Collectors.toSet());
+        }
+
         FilterData filterData = createFilterData(moveableCell.getSide());
 
         return getFilteredMovesForCell(moveableCell, filterData, false);
     }
 
+    /**
+     * Для ATTACK_TABLES ходы генерирует MoveGenerator в буфер упакованных ходов, а ExtendedMove создаются только тут,
+     * на выходе. Тем, кому объекты не нужны (перебор), лучше звать MoveGenerator напрямую со своим MoveList.
+     */
     public Stream<ExtendedMove> getStandardMovesStream(Side side) throws KingNotFoundException {
+        if (bitboard != null) {
+            MoveList moves = new MoveList();
+            MoveGenerator.generateLegalMoves(bitboard, game, side, moves);
+            return moves.stream().mapToObj(PackedMove::toExtendedMove);
+        }
+
         FilterData filterData = createFilterData(side);
 
         return matrix
                 .allPiecesBySideStream(side)
                 .flatMap(moveableCell -> {
                     Set<PointDTO> filteredMoves = getFilteredMovesForCell(moveableCell, filterData, false);
-                    return filteredMoves.stream().map(pointTo -> new ExtendedMove(moveableCell, matrix.getCell(pointTo)));
+                    return filteredMoves.stream().flatMap(pointTo -> createMoves(moveableCell, matrix.getCell(pointTo)));
                 });
     }
 
+    private Stream<ExtendedMove> createMoves(CellDTO from, CellDTO to) {
+        ExtendedMove move = new ExtendedMove(from, to);
+        if (!move.isPawnTransformation()) {
+            return Stream.of(move);
+        }
+
+        return Stream.of(PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT)
+                .map(pieceFromPawn -> new ExtendedMove(from, to, pieceFromPawn));
+    }
+
     private FilterData createFilterData(Side side) {
         Side enemySide = side.reverse();
         PointDTO kingPoint = matrix.getKingPoint(side);
@@ -354,13 +415,8 @@ public class MoveHelper {
      * Не вызывай этот метод ниоткуда, кроме addUnfilteredMovesForCell()/addFilteredMovesForCell(), ладно?
      */
     private Set<PointDTO> getMovesForCell(CellDTO moveableCell, FilterData filterData, boolean isDefensive) {
-        Set<PointDTO> moves = new InternalMoveHelper(moveableCell, filterData, isDefensive)
+        return new InternalMoveHelper(moveableCell, filterData, isDefensive)
                 .getAnyPieceMoves();
-
-        Debug.addMovesForCallsCount.incrementAndGet();
-        Debug.addMovesForCallsCount.addAndGet(moves.size());
-
-        return moves;
     }
 
     @SuppressWarnings({"PointlessArithmeticExpression"})
@@ -466,6 +522,11 @@ public class MoveHelper {
         }
 
         private void addMovesForKnight() {
+            if (isAttackTablesEnabled()) {
+                addMovesByAttacks(AttackTables.knightAttacks(getMovableSquare()));
+                return;
+            }
+
             addMove(1, 2);
             addMove(2, 1);
             addMove(1, -2);
@@ -477,6 +538,11 @@ public class MoveHelper {
         }
 
         private void addMovesForBishop() {
+            if (isAttackTablesEnabled()) {
+                addMovesByAttacks(AttackTables.bishopAttacks(getMovableSquare(), bitboard.getOccupied()));
+                return;
+            }
+
             addMovesByVector(1, 1);
             addMovesByVector(-1, 1);
             addMovesByVector(1, -1);
@@ -484,6 +550,11 @@ public class MoveHelper {
         }
 
         private void addMovesForRook() {
+            if (isAttackTablesEnabled()) {
+                addMovesByAttacks(AttackTables.rookAttacks(getMovableSquare(), bitboard.getOccupied()));
+                return;
+            }
+
             addMovesByVector(1, 0);
             addMovesByVector(-1, 0);
             addMovesByVector(0, 1);
@@ -496,27 +567,36 @@ public class MoveHelper {
         }
 
         private void addMovesForKing() {
-            addKingMove(0, 1);
-            addKingMove(0, -1);
-            addKingMove(1, 0);
-            addKingMove(-1, 0);
-
-            addKingMove(1, 1);
-            addKingMove(1, -1);
-            addKingMove(-1, 1);
-            addKingMove(-1, -1);
+            if (isAttackTablesEnabled()) {
+                long attacks = AttackTables.kingAttacks(getMovableSquare());
+                while (attacks != 0) {
+                    addKingMove(bitboard.getCell(Long.numberOfTrailingZeros(attacks)));
+                    attacks &= attacks - 1;
+                }
+            } else {
+                addKingMove(0, 1);
+                addKingMove(0, -1);
+                addKingMove(1, 0);
+                addKingMove(-1, 0);
+
+                addKingMove(1, 1);
+                addKingMove(1, -1);
+                addKingMove(-1, 1);
+                addKingMove(-1, -1);
+            }
 
             int kingRowIndex = movableCell.getRowIndex();
 
+            //ладью могли срубить, не сходив ей (флаг рокировки при этом остается)
             if (!isCheckFilterEnabled() || filterData.sourceOfCheck == null) {
-                if (game.isShortCastlingAvailable(allySide)) {
+                if (game.isShortCastlingAvailable(allySide) && isAllyRook(kingRowIndex, ROOK_SHORT_COLUMN_INDEX)) {
                     if (isEmptyCellsOnRow(kingRowIndex, 1, 2)) {
                         if (isSafeCrossPointForCastling(-1)) {
                             addKingMove(0, -2);
                         }
                     }
                 }
-                if (game.isLongCastlingAvailable(allySide)) {
+                if (game.isLongCastlingAvailable(allySide) && isAllyRook(kingRowIndex, ROOK_LONG_COLUMN_INDEX)) {
                     if (isEmptyCellsOnRow(kingRowIndex, 4, 5, 6)) {
                         if (isSafeCrossPointForCastling(1)) {
                             addKingMove(0, 2);
@@ -554,13 +634,46 @@ public class MoveHelper {
                     if (currentRow == 3 || currentRow == 4) {        //и это творится на нужной горизонтали
                         //значит можно делать взятие на проходе
                         //проверять ничего не нужно, эта ячейка 100% пуста (не могла же пешка перепрыгнуть фигуру)
-                        //noinspection ConstantConditions
-                        addMove(1 * vector, enemyLongMoveColumnIndex - currentColumn);
+                        if (!isCheckFilterEnabled() || !isEnPassantExposesKing(enemyLongMoveColumnIndex)) {
+                            //noinspection ConstantConditions
+                            addMove(1 * vector, enemyLongMoveColumnIndex - currentColumn);
+                        }
                     }
                 }
             }
         }
 
+        /**
+         * Взятие на проходе убирает с горизонтали сразу две пешки, и связку через них не видит ни unmovablePointsMap
+         * (там связка только через одну фигуру), ни проверка шаха. Например король на h4, наши пешки f4+e4, ладья противника на b4:
+         * f4xe3 открывает королю шах.
+         */
+        private boolean isEnPassantExposesKing(int enemyPawnColumnIndex) {
+            int rowIndex = movableCell.getRowIndex();
+            PointDTO kingPoint = matrix.getKingPoint(allySide);
+            if (kingPoint.getRowIndex() != rowIndex) {
+                return false;
+            }
+
+            int columnVector = Integer.signum(movableCell.getColumnIndex() - kingPoint.getColumnIndex());
+            for (int columnIndex = kingPoint.getColumnIndex() + columnVector; PointDTO.isCorrectIndex(rowIndex, columnIndex); columnIndex += columnVector) {
+                if (columnIndex == movableCell.getColumnIndex() || columnIndex == enemyPawnColumnIndex) {
+                    continue;
+                }
+
+                CellDTO cell = matrix.getCell(rowIndex, columnIndex);
+                if (cell.isEmpty()) {
+                    continue;
+                }
+
+                boolean isBehindPawns = Math.abs(columnIndex - kingPoint.getColumnIndex()) > Math.abs(movableCell.getColumnIndex() - kingPoint.getColumnIndex());
+                return isBehindPawns && cell.getSide() != allySide
+                        && (cell.getPieceType() == PieceType.ROOK || cell.getPieceType() == PieceType.QUEEN);
+            }
+
+            return false;
+        }
+
         /**
          * @return true if move added, false - otherwise (addable cell is null or ally)
          */
@@ -593,6 +706,17 @@ public class MoveHelper {
             return false;
         }
 
+        /**
+         * attacks - все атакуемые клетки (из таблиц). Оставляем пустые и занятые фигурами expectedSide
+         */
+        private void addMovesByAttacks(long attacks) {
+            long targets = attacks & (~bitboard.getOccupied() | bitboard.getPieces(expectedSide));
+            while (targets != 0) {
+                moves.add(point(Long.numberOfTrailingZeros(targets)));
+                targets &= targets - 1;
+            }
+        }
+
         private void addMovesByVector(int rowVector, int columnVector) {
             for (int i = 1; i < 8; i++) {
                 boolean isAdded = addMove(rowVector * i, columnVector * i);
@@ -603,7 +727,10 @@ public class MoveHelper {
         }
 
         private void addKingMove(int rowIndexOffset, int columnIndexOffset) {
-            CellDTO cell = getCellByOffsets(rowIndexOffset, columnIndexOffset);
+            addKingMove(getCellByOffsets(rowIndexOffset, columnIndexOffset));
+        }
+
+        private void addKingMove(CellDTO cell) {
             if (cell != null && (cell.isEmpty() || cell.getSide() == expectedSide)) {
                 PointDTO point = cell.getPoint();
 
@@ -661,6 +788,11 @@ public class MoveHelper {
             return true;
         }
 
+        private boolean isAllyRook(int rowIndex, int columnIndex) {
+            CellDTO cell = getCell(rowIndex, columnIndex);
+            return cell != null && cell.getSide() == allySide && cell.getPieceType() == PieceType.ROOK;
+        }
+
         private boolean isEmptyCell(int rowIndex, int columnIndex) {
             CellDTO cell = getCell(rowIndex, columnIndex);
             Objects.requireNonNull(cell);
@@ -683,6 +815,14 @@ public class MoveHelper {
         private boolean isCheckFilterEnabled() {
             return filterData != null;
         }
+
+        private boolean isAttackTablesEnabled() {
+            return bitboard != null;
+        }
+
+        private int getMovableSquare() {
+            return square(movableCell.getRowIndex(), movableCell.getColumnIndex());
+        }
     }
 
     private CellDTO getCell(int rowIndex, int columnIndex) {
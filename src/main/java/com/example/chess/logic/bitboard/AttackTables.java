@@ -0,0 +1,265 @@
+package com.example.chess.logic.bitboard;
+
+import com.example.chess.enums.Side;
+import lombok.experimental.UtilityClass;
+
+import static com.example.chess.logic.ChessConstants.BOARD_SIZE;
+import static com.example.chess.logic.bitboard.Bitboards.*;
+
+/**
+ * Предвычисленные таблицы атак.
+ * - конь, король, пешка: просто lookup по клетке
+ * - слон, ладья: magic bitboards. attacks = table[square][((occupied & mask) * magic) >>> shift]
+ * <p>
+ * Magic-числа подобраны перебором (xorshift64*, sparse random) под нумерацию клеток из Bitboards.
+ * Если нумерация клеток когда-нибудь поменяется - их нужно будет подобрать заново.
+ */
+@UtilityClass
+@SuppressWarnings("WeakerAccess")
+public class AttackTables {
+
+    private static final int[][] KNIGHT_VECTORS = {{1, 2}, {2, 1}, {1, -2}, {2, -1}, {-1, 2}, {-2, 1}, {-1, -2}, {-2, -1}};
+    private static final int[][] KING_VECTORS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] BISHOP_VECTORS = {{1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+    private static final int[][] ROOK_VECTORS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    private static final long[] KNIGHT_ATTACKS = new long[SQUARES_COUNT];
+    private static final long[] KING_ATTACKS = new long[SQUARES_COUNT];
+    private static final long[][] PAWN_ATTACKS = new long[Side.values().length][SQUARES_COUNT];
+
+    private static final long[] BISHOP_MAGIC_NUMBERS = {
+            0x10102002004A1420L, 0x8020040400584008L, 0x10510800811201C8L, 0x5204042080000088L,
+            0x2204106880000002L, 0x1401042004000000L, 0x0400880410042004L, 0x0028208200A02020L,
+            0x1500241990010E00L, 0x8001200182020A40L, 0x40004101030B0000L, 0x8002041042000100L,
+            0x4010011041020038L, 0x0000010421044000L, 0x1500210808020A00L, 0x8000088400880520L,
+            0x0405004010040100L, 0x1005823210040108L, 0x2708008102040011L, 0x4048200404009100L,
+            0x0018104101400024L, 0x0003000601190101L, 0x8004803108491000L, 0x8014241200820800L,
+            0x0006E080100C3040L, 0x0501044A11041800L, 0x9020300008004045L, 0x0894080000220040L,
+            0x1001010083104000L, 0x5004030040900080L, 0x000400422C012400L, 0x0002128698404812L,
+            0x1010108404900440L, 0x0928021182084100L, 0x2006080409020024L, 0x1010202020180080L,
+            0xA010008200202200L, 0x2098015100019004L, 0x0002041440810811L, 0x802A02020000B098L,
+            0x0009015090004060L, 0x4000821082081001L, 0x0100210040420800L, 0x0800004010488A00L,
+            0x2000081104004040L, 0x4C8E029015000082L, 0x0420340322224842L, 0x1298260043400210L,
+            0x0000822802400008L, 0x00008A0101600000L, 0x3040003412080021L, 0x3040290220884800L,
+            0x4A1500401041004AL, 0x8010200282020781L, 0x0020203142209091L, 0x0070300600902110L,
+            0x0040808800B62048L, 0x0000810400C44420L, 0x00080400440C0441L, 0x8340080020840411L,
+            0x0000000104208200L, 0x0000800810D00080L, 0x0400530411080200L, 0x4040702400932244L
+    };
+    private static final long[] ROOK_MAGIC_NUMBERS = {
+            0x1080004008801020L, 0x0840092002C03000L, 0x1900200010400900L, 0x0880100008000480L,
+            0x4200100420080200L, 0x8100020100080400L, 0x0200040110886200L, 0x0200008040220411L,
+            0x0404800084400220L, 0x0000401000402000L, 0x0086001081220440L, 0x0408800800100280L,
+            0x000A001201040820L, 0x8848800200840080L, 0x4001000100040200L, 0x0442000102105084L,
+            0x9080010020804100L, 0x0040404000201009L, 0x0000808010002009L, 0x2200090021D00100L,
+            0x0008008008040080L, 0x0004004002010040L, 0x0011040008015042L, 0x00000A0001768104L,
+            0x0000800080204009L, 0x2010004140002001L, 0x9800200280100080L, 0x1000100080080080L,
+            0x0442000A00049020L, 0x2100040080020080L, 0x0800120400900148L, 0x0010040A00128541L,
+            0x2800804000800030L, 0x1010002000400041L, 0x4000200011004100L, 0x0610008410800800L,
+            0x0400802402800800L, 0xC100020080800400L, 0x0002000802000401L, 0x0182085882000401L,
+            0x0220204000808000L, 0x2860100040024022L, 0x0001002004110040L, 0x99101042000A0020L,
+            0x0004080004008080L, 0x0010040002008080L, 0x2012004881020004L, 0x8300842444820011L,
+            0x0088403882010200L, 0x0820400080210100L, 0x0110910040A00300L, 0x0801100280080480L,
+            0x0242009008200600L, 0x1002000489500200L, 0x0040800200010080L, 0x0091800041000080L,
+            0x0000209300488001L, 0x04C1002414824001L, 0x020020000B001041L, 0x7000100004200901L,
+            0x8002002004100802L, 0x30010002084C0007L, 0x0888221800813004L, 0x4000002840840112L
+    };
+
+    private static final Magic[] BISHOP_MAGICS = new Magic[SQUARES_COUNT];
+    private static final Magic[] ROOK_MAGICS = new Magic[SQUARES_COUNT];
+
+    //[from][to] - клетки строго между from и to (если они на одной линии), иначе 0
+    private static final long[][] BETWEEN = new long[SQUARES_COUNT][SQUARES_COUNT];
+    //[from][to] - вся линия (вертикаль/горизонталь/диагональ), проходящая через обе клетки, иначе 0
+    private static final long[][] LINE = new long[SQUARES_COUNT][SQUARES_COUNT];
+
+    static {
+        for (int square = 0; square < SQUARES_COUNT; square++) {
+            KNIGHT_ATTACKS[square] = stepAttacks(square, KNIGHT_VECTORS);
+            KING_ATTACKS[square] = stepAttacks(square, KING_VECTORS);
+
+            for (Side side : Side.values()) {
+                int vector = side.getPawnMoveVector();
+                PAWN_ATTACKS[side.ordinal()][square] = stepAttacks(square, new int[][]{{vector, 1}, {vector, -1}});
+            }
+        }
+
+        for (int square = 0; square < SQUARES_COUNT; square++) {
+            BISHOP_MAGICS[square] = createMagic(square, BISHOP_VECTORS, BISHOP_MAGIC_NUMBERS[square]);
+            ROOK_MAGICS[square] = createMagic(square, ROOK_VECTORS, ROOK_MAGIC_NUMBERS[square]);
+        }
+
+        for (int from = 0; from < SQUARES_COUNT; from++) {
+            for (int to = 0; to < SQUARES_COUNT; to++) {
+                if (from == to) {
+                    continue;
+                }
+                if (contains(bishopAttacks(from, EMPTY), to)) {
+                    BETWEEN[from][to] = bishopAttacks(from, bit(to)) & bishopAttacks(to, bit(from));
+                    LINE[from][to] = (bishopAttacks(from, EMPTY) & bishopAttacks(to, EMPTY)) | bit(from) | bit(to);
+                } else if (contains(rookAttacks(from, EMPTY), to)) {
+                    BETWEEN[from][to] = rookAttacks(from, bit(to)) & rookAttacks(to, bit(from));
+                    LINE[from][to] = (rookAttacks(from, EMPTY) & rookAttacks(to, EMPTY)) | bit(from) | bit(to);
+                }
+            }
+        }
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Клетки, которые бьет пешка стороны side, стоящая на square
+     */
+    public static long pawnAttacks(Side side, int square) {
+        return PAWN_ATTACKS[side.ordinal()][square];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_MAGICS[square].attacks(occupied);
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_MAGICS[square].attacks(occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return bishopAttacks(square, occupied) | rookAttacks(square, occupied);
+    }
+
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    private static long stepAttacks(int square, int[][] vectors) {
+        long attacks = EMPTY;
+        for (int[] vector : vectors) {
+            int rowIndex = rowIndex(square) + vector[0];
+            int columnIndex = columnIndex(square) + vector[1];
+            if (isOnBoard(rowIndex, columnIndex)) {
+                attacks |= bit(square(rowIndex, columnIndex));
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Медленный вариант (луч до первой занятой клетки), используется только при построении таблиц
+     */
+    private static long slidingAttacks(int square, long occupied, long[] rays, boolean[] isForward) {
+        long attacks = EMPTY;
+        for (int i = 0; i < rays.length; i++) {
+            long ray = rays[i];
+            long blockers = ray & occupied;
+
+            if (blockers != EMPTY) {
+                int blockerSquare = isForward[i]
+                        ? Long.numberOfTrailingZeros(blockers)
+                        : SQUARES_COUNT - 1 - Long.numberOfLeadingZeros(blockers);
+                //все что за блокирующей фигурой - отрезаем
+                ray &= ~rayBehind(square, blockerSquare, ray, isForward[i]);
+            }
+            attacks |= ray;
+        }
+        return attacks;
+    }
+
+    private static long rayBehind(int square, int blockerSquare, long ray, boolean isForward) {
+        if (isForward) {
+            return ray & -(bit(blockerSquare) << 1);
+        }
+        return ray & (bit(blockerSquare) - 1);
+    }
+
+    private static long ray(int square, int[] vector) {
+        long ray = EMPTY;
+        int rowIndex = rowIndex(square) + vector[0];
+        int columnIndex = columnIndex(square) + vector[1];
+
+        while (isOnBoard(rowIndex, columnIndex)) {
+            ray |= bit(square(rowIndex, columnIndex));
+            rowIndex += vector[0];
+            columnIndex += vector[1];
+        }
+        return ray;
+    }
+
+    /**
+     * Клетки, занятость которых влияет на атаки (луч без последней клетки у края доски)
+     */
+    private static long relevantMask(int square, int[][] vectors) {
+        long mask = EMPTY;
+        for (int[] vector : vectors) {
+            int rowIndex = rowIndex(square) + vector[0];
+            int columnIndex = columnIndex(square) + vector[1];
+
+            while (isOnBoard(rowIndex + vector[0], columnIndex + vector[1])) {
+                mask |= bit(square(rowIndex, columnIndex));
+                rowIndex += vector[0];
+                columnIndex += vector[1];
+            }
+        }
+        return mask;
+    }
+
+    private static Magic createMagic(int square, int[][] vectors, long magic) {
+        long mask = relevantMask(square, vectors);
+        int shift = SQUARES_COUNT - Long.bitCount(mask);
+        long[] table = new long[1 << Long.bitCount(mask)];
+        boolean[] isFilled = new boolean[table.length];
+
+        long[] rays = new long[vectors.length];
+        boolean[] isForward = new boolean[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            rays[i] = ray(square, vectors[i]);
+            isForward[i] = vectors[i][0] * BOARD_SIZE + vectors[i][1] > 0;
+        }
+
+        //перебор всех подмножеств маски (carry-rippler)
+        long occupied = EMPTY;
+        do {
+            int index = (int) ((occupied * magic) >>> shift);
+            long attacks = slidingAttacks(square, occupied, rays, isForward);
+
+            if (isFilled[index] && table[index] != attacks) {
+                throw new IllegalStateException("Bad magic number for square: " + square);
+            }
+            table[index] = attacks;
+            isFilled[index] = true;
+
+            occupied = (occupied - mask) & mask;
+        } while (occupied != EMPTY);
+
+        return new Magic(mask, magic, shift, table);
+    }
+
+    private static boolean isOnBoard(int rowIndex, int columnIndex) {
+        return rowIndex >= 0 && rowIndex < BOARD_SIZE && columnIndex >= 0 && columnIndex < BOARD_SIZE;
+    }
+
+    private static final class Magic {
+        private final long mask;
+        private final long magic;
+        private final int shift;
+        private final long[] attacks;
+
+        private Magic(long mask, long magic, int shift, long[] attacks) {
+            this.mask = mask;
+            this.magic = magic;
+            this.shift = shift;
+            this.attacks = attacks;
+        }
+
+        private long attacks(long occupied) {
+            return attacks[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+    }
+}
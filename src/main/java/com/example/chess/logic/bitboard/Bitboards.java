@@ -0,0 +1,113 @@
+package com.example.chess.logic.bitboard;
+
+import com.example.chess.dto.CellDTO;
+import com.example.chess.dto.PointDTO;
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import lombok.experimental.UtilityClass;
+
+import java.util.stream.IntStream;
+
+import static com.example.chess.logic.ChessConstants.BOARD_SIZE;
+
+/**
+ * Битовая доска: square = rowIndex * 8 + columnIndex, т.е. нумерация клеток совпадает с CellsMatrix
+ * (columnIndex = 0 это вертикаль "h", см. CommonUtils.columnNamesMap).
+ */
+@UtilityClass
+@SuppressWarnings("WeakerAccess")
+public class Bitboards {
+
+    public static final int SQUARES_COUNT = BOARD_SIZE * BOARD_SIZE;
+    public static final int PIECES_COUNT = Piece.values().length;
+    public static final int NO_SQUARE = -1;
+    public static final int NO_PIECE = -1;
+
+    public static final long EMPTY = 0L;
+    public static final long FIRST_ROW = 0xFFL;
+    public static final long FIRST_COLUMN = 0x0101010101010101L;
+
+    private static final Piece[] PIECES = Piece.values();
+    private static final PointDTO[] POINTS = new PointDTO[SQUARES_COUNT];
+    //[square][piece.ordinal() или PIECES_COUNT для пустой клетки]
+    private static final CellDTO[][] CELLS = new CellDTO[SQUARES_COUNT][PIECES_COUNT + 1];
+
+    static {
+        for (int square = 0; square < SQUARES_COUNT; square++) {
+            POINTS[square] = PointDTO.valueOf(rowIndex(square), columnIndex(square));
+
+            for (int pieceIndex = 0; pieceIndex < PIECES_COUNT; pieceIndex++) {
+                CELLS[square][pieceIndex] = CellDTO.valueOf(rowIndex(square), columnIndex(square), piece(pieceIndex));
+            }
+            CELLS[square][PIECES_COUNT] = CellDTO.valueOf(rowIndex(square), columnIndex(square), null);
+        }
+    }
+
+    public static int square(int rowIndex, int columnIndex) {
+        return rowIndex * BOARD_SIZE + columnIndex;
+    }
+
+    public static int square(PointDTO point) {
+        return square(point.getRowIndex(), point.getColumnIndex());
+    }
+
+    public static int rowIndex(int square) {
+        return square >>> 3;
+    }
+
+    public static int columnIndex(int square) {
+        return square & 7;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static long row(int rowIndex) {
+        return FIRST_ROW << (rowIndex * BOARD_SIZE);
+    }
+
+    public static long column(int columnIndex) {
+        return FIRST_COLUMN << columnIndex;
+    }
+
+    public static boolean contains(long bitboard, int square) {
+        return (bitboard & bit(square)) != 0;
+    }
+
+    public static PointDTO point(int square) {
+        return POINTS[square];
+    }
+
+    /**
+     * CellDTO immutable, поэтому битборд-доски не создают их, а отдают из кэша
+     */
+    public static CellDTO cell(int square, Piece piece) {
+        return CELLS[square][piece == null ? PIECES_COUNT : piece.ordinal()];
+    }
+
+    public static int pieceIndex(Side side, PieceType pieceType) {
+        return side.ordinal() * PieceType.values().length + pieceType.ordinal();
+    }
+
+    public static Piece piece(int pieceIndex) {
+        return pieceIndex == NO_PIECE ? null : PIECES[pieceIndex];
+    }
+
+    /**
+     * Индексы установленных битов по возрастанию (в том же порядке, в каком CellsMatrix обходит клетки)
+     */
+    public static int[] toSquares(long bitboard) {
+        int[] squares = new int[Long.bitCount(bitboard)];
+        for (int i = 0; bitboard != 0; i++) {
+            squares[i] = Long.numberOfTrailingZeros(bitboard);
+            bitboard &= bitboard - 1;
+        }
+        return squares;
+    }
+
+    public static IntStream squaresStream(long bitboard) {
+        return IntStream.of(toSquares(bitboard));
+    }
+}
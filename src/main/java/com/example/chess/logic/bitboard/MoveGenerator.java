@@ -0,0 +1,337 @@
+package com.example.chess.logic.bitboard;
+
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.exceptions.KingNotFoundException;
+import com.example.chess.logic.objects.IBitboardMatrix;
+import com.example.chess.logic.objects.game.IGame;
+import lombok.experimental.UtilityClass;
+
+import static com.example.chess.logic.ChessConstants.ROOK_LONG_COLUMN_INDEX;
+import static com.example.chess.logic.ChessConstants.ROOK_SHORT_COLUMN_INDEX;
+import static com.example.chess.logic.bitboard.AttackTables.*;
+import static com.example.chess.logic.bitboard.Bitboards.*;
+
+/**
+ * Генератор легальных ходов на битбордах. Пишет упакованные ходы (PackedMove) в переданный MoveList и ничего не аллоцирует.
+ * <p>
+ * Вместо FilterData из MoveHelper:
+ * - шах: checkers (фигуры противника, которые бьют короля). При двойном шахе ходит только король,
+ * при одинарном - остальные фигуры могут только срубить источник шаха или встать между ним и королем (between)
+ * - связки: pinned (единственная фигура между королем и дальнобойной фигурой противника), такая фигура ходит только по line
+ * - король не может ходить на клетки из карты атак противника (она считается без нашего короля, чтобы не прятаться от слона "за собой")
+ * - взятие на проходе проверяется честно: снимаем обе пешки и смотрим, не открылся ли король
+ * <p>
+ * checkers, pinned и карты атак берутся у доски (IBitboardMatrix), т.е. в переборе на SearchBoard это просто lookup.
+ * <p>
+ * generateLegalCaptures() - то же самое, но только взятия и превращения пешек (для quiescence search).
+ */
+@UtilityClass
+@SuppressWarnings("WeakerAccess")
+public class MoveGenerator {
+
+    private static final long ALL_SQUARES = ~EMPTY;
+    private static final PieceType[] PROMOTION_TYPES = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+
+    public static void generateLegalMoves(IBitboardMatrix board, IGame game, Side side, MoveList moves) throws KingNotFoundException {
+        generateLegalMoves(board, game, side, false, moves);
+    }
+
+    /**
+     * Только взятия (включая взятие на проходе) и превращения пешек. Рокировок и тихих ходов нет
+     */
+    public static void generateLegalCaptures(IBitboardMatrix board, IGame game, Side side, MoveList moves) throws KingNotFoundException {
+        generateLegalMoves(board, game, side, true, moves);
+    }
+
+    private static void generateLegalMoves(IBitboardMatrix board, IGame game, Side side, boolean isCapturesOnly, MoveList moves) {
+        moves.clear();
+
+        int kingSquare = board.getExistingKingSquare(side);
+        long allyPieces = board.getPieces(side);
+        long enemyAttacks = board.getAttackedSquares(side.reverse());
+        long checkers = board.getCheckers(side);
+
+        long targets = isCapturesOnly ? board.getPieces(side.reverse()) : ~allyPieces;
+
+        addKingMoves(board, game, side, kingSquare, checkers, enemyAttacks, targets, !isCapturesOnly, moves);
+        if (Long.bitCount(checkers) > 1) {
+            //двойной шах - ходит только король
+            return;
+        }
+
+        //тихие ходы пешек: при isCapturesOnly остаются только превращения
+        long pushTargets = ~board.getOccupied();
+        if (isCapturesOnly) {
+            pushTargets &= row(0) | row(7);
+        }
+
+        if (checkers != 0) {
+            long blockSquares = between(kingSquare, Long.numberOfTrailingZeros(checkers));
+            targets &= checkers | blockSquares;
+            pushTargets &= blockSquares;
+        }
+        long pinned = board.getPinned(side);
+
+        addPawnMoves(board, game, side, kingSquare, targets, pushTargets, pinned, isCapturesOnly, moves);
+
+        //связанный конь не может ходить в принципе
+        addPieceMoves(board, side, PieceType.KNIGHT, board.getPieces(side, PieceType.KNIGHT) & ~pinned, kingSquare, targets, pinned, moves);
+        addPieceMoves(board, side, PieceType.BISHOP, board.getPieces(side, PieceType.BISHOP), kingSquare, targets, pinned, moves);
+        addPieceMoves(board, side, PieceType.ROOK, board.getPieces(side, PieceType.ROOK), kingSquare, targets, pinned, moves);
+        addPieceMoves(board, side, PieceType.QUEEN, board.getPieces(side, PieceType.QUEEN), kingSquare, targets, pinned, moves);
+    }
+
+    /**
+     * Все фигуры стороны attackerSide, которые бьют square при заданной занятости доски
+     */
+    public static long getAttackers(IBitboardMatrix board, int square, Side attackerSide, long occupied) {
+        long queens = board.getPieces(attackerSide, PieceType.QUEEN);
+
+        return (pawnAttacks(attackerSide.reverse(), square) & board.getPieces(attackerSide, PieceType.PAWN))
+                | (knightAttacks(square) & board.getPieces(attackerSide, PieceType.KNIGHT))
+                | (kingAttacks(square) & board.getPieces(attackerSide, PieceType.KING))
+                | (bishopAttacks(square, occupied) & (board.getPieces(attackerSide, PieceType.BISHOP) | queens))
+                | (rookAttacks(square, occupied) & (board.getPieces(attackerSide, PieceType.ROOK) | queens));
+    }
+
+    public static boolean isAttacked(IBitboardMatrix board, int square, Side attackerSide, long occupied) {
+        return getAttackers(board, square, attackerSide, occupied) != 0;
+    }
+
+    /**
+     * Все клетки, которые бьет side. Король противника считается прозрачным (см. IBitboardMatrix.getAttackedSquares)
+     */
+    public static long getAttackedSquares(IBitboardMatrix board, Side side) {
+        long occupied = board.getOccupied() & ~board.getPieces(side.reverse(), PieceType.KING);
+
+        long attacks = getPawnsAttacks(side, board.getPieces(side, PieceType.PAWN));
+        long knights = board.getPieces(side, PieceType.KNIGHT);
+        while (knights != 0) {
+            attacks |= knightAttacks(Long.numberOfTrailingZeros(knights));
+            knights &= knights - 1;
+        }
+        long queens = board.getPieces(side, PieceType.QUEEN);
+        long diagonalSliders = board.getPieces(side, PieceType.BISHOP) | queens;
+        while (diagonalSliders != 0) {
+            attacks |= bishopAttacks(Long.numberOfTrailingZeros(diagonalSliders), occupied);
+            diagonalSliders &= diagonalSliders - 1;
+        }
+        long straightSliders = board.getPieces(side, PieceType.ROOK) | queens;
+        while (straightSliders != 0) {
+            attacks |= rookAttacks(Long.numberOfTrailingZeros(straightSliders), occupied);
+            straightSliders &= straightSliders - 1;
+        }
+
+        int kingSquare = board.getKingSquare(side);
+        if (kingSquare != NO_SQUARE) {
+            attacks |= kingAttacks(kingSquare);
+        }
+        return attacks;
+    }
+
+    /**
+     * Клетки, которые бьют все пешки pawns стороны side сразу (сдвигом всего битборда, без цикла по пешкам)
+     */
+    public static long getPawnsAttacks(Side side, long pawns) {
+        if (side == Side.WHITE) {
+            return ((pawns << 9) & ~column(0)) | ((pawns << 7) & ~column(7));
+        }
+        return ((pawns >>> 7) & ~column(0)) | ((pawns >>> 9) & ~column(7));
+    }
+
+    /**
+     * Фигуры стороны side, связанные с собственным королем
+     */
+    public static long getPinned(IBitboardMatrix board, int kingSquare, Side side, long occupied) {
+        Side enemySide = side.reverse();
+        long enemyQueens = board.getPieces(enemySide, PieceType.QUEEN);
+        long snipers = (rookAttacks(kingSquare, EMPTY) & (board.getPieces(enemySide, PieceType.ROOK) | enemyQueens))
+                | (bishopAttacks(kingSquare, EMPTY) & (board.getPieces(enemySide, PieceType.BISHOP) | enemyQueens));
+
+        long pinned = EMPTY;
+        while (snipers != 0) {
+            int sniperSquare = Long.numberOfTrailingZeros(snipers);
+            long blockers = between(sniperSquare, kingSquare) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & board.getPieces(side);
+            }
+            snipers &= snipers - 1;
+        }
+        return pinned;
+    }
+
+    private static void addPieceMoves(IBitboardMatrix board, Side side, PieceType pieceType, long pieces,
+                                      int kingSquare, long targets, long pinned, MoveList moves) {
+        int pieceIndex = pieceIndex(side, pieceType);
+        long occupied = board.getOccupied();
+
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+
+            long attacks;
+            switch (pieceType) {
+                case KNIGHT:
+                    attacks = knightAttacks(from);
+                    break;
+                case BISHOP:
+                    attacks = bishopAttacks(from, occupied);
+                    break;
+                case ROOK:
+                    attacks = rookAttacks(from, occupied);
+                    break;
+                case QUEEN:
+                    attacks = queenAttacks(from, occupied);
+                    break;
+                default:
+                    throw new UnsupportedOperationException();
+            }
+
+            attacks &= targets;
+            if (contains(pinned, from)) {
+                attacks &= line(kingSquare, from);
+            }
+            addMoves(board, from, pieceIndex, attacks, moves);
+        }
+    }
+
+    private static void addKingMoves(IBitboardMatrix board, IGame game, Side side, int kingSquare,
+                                     long checkers, long enemyAttacks, long targets, boolean isCastlingAllowed, MoveList moves) {
+        int kingIndex = pieceIndex(side, PieceType.KING);
+        long occupied = board.getOccupied();
+
+        addMoves(board, kingSquare, kingIndex, kingAttacks(kingSquare) & targets & ~enemyAttacks, moves);
+
+        if (checkers != 0 || !isCastlingAllowed) {
+            return;
+        }
+
+        int rowIndex = rowIndex(kingSquare);
+        long rooks = board.getPieces(side, PieceType.ROOK);
+
+        if (game.isShortCastlingAvailable(side)) {
+            int rookSquare = square(rowIndex, ROOK_SHORT_COLUMN_INDEX);
+            if (contains(rooks, rookSquare) && (between(kingSquare, rookSquare) & occupied) == 0
+                    && !contains(enemyAttacks, kingSquare - 1)
+                    && !contains(enemyAttacks, kingSquare - 2)) {
+                moves.add(PackedMove.of(kingSquare, kingSquare - 2, kingIndex, NO_PIECE, null, PackedMove.CASTLING));
+            }
+        }
+        if (game.isLongCastlingAvailable(side)) {
+            int rookSquare = square(rowIndex, ROOK_LONG_COLUMN_INDEX);
+            if (contains(rooks, rookSquare) && (between(kingSquare, rookSquare) & occupied) == 0
+                    && !contains(enemyAttacks, kingSquare + 1)
+                    && !contains(enemyAttacks, kingSquare + 2)) {
+                moves.add(PackedMove.of(kingSquare, kingSquare + 2, kingIndex, NO_PIECE, null, PackedMove.CASTLING));
+            }
+        }
+    }
+
+    /**
+     * @param targets     куда можно бить
+     * @param pushTargets куда можно просто пойти
+     */
+    private static void addPawnMoves(IBitboardMatrix board, IGame game, Side side, int kingSquare, long targets, long pushTargets,
+                                     long pinned, boolean isCapturesOnly, MoveList moves) {
+        Side enemySide = side.reverse();
+        int pawnIndex = pieceIndex(side, PieceType.PAWN);
+        int vector = side.getPawnMoveVector();
+        int startRowIndex = side == Side.WHITE ? 1 : 6;
+        long occupied = board.getOccupied();
+        long enemyPieces = board.getPieces(enemySide);
+
+        long pawns = board.getPieces(side, PieceType.PAWN);
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            long available = contains(pinned, from) ? line(kingSquare, from) : ALL_SQUARES;
+            int rowIndex = rowIndex(from);
+            int columnIndex = columnIndex(from);
+
+            int to = square(rowIndex + vector, columnIndex);
+            if (!contains(occupied, to)) {
+                if (contains(pushTargets & available, to)) {
+                    addPawnMove(from, to, pawnIndex, NO_PIECE, moves);
+                }
+
+                if (rowIndex == startRowIndex && !isCapturesOnly) {
+                    int longTo = square(rowIndex + 2 * vector, columnIndex);
+                    if (!contains(occupied, longTo) && contains(pushTargets & available, longTo)) {
+                        moves.add(PackedMove.of(from, longTo, pawnIndex, NO_PIECE, null, PackedMove.PAWN_LONG_MOVE));
+                    }
+                }
+            }
+
+            long captures = pawnAttacks(side, from) & enemyPieces & targets & available;
+            while (captures != 0) {
+                int captureTo = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                addPawnMove(from, captureTo, pawnIndex, getPieceIndex(board, captureTo), moves);
+            }
+        }
+
+        addEnPassantMoves(board, game, side, kingSquare, moves);
+    }
+
+    private static void addPawnMove(int from, int to, int pawnIndex, int capturedPieceIndex, MoveList moves) {
+        int rowIndexTo = rowIndex(to);
+        if (rowIndexTo == 0 || rowIndexTo == 7) {
+            for (PieceType pieceFromPawn : PROMOTION_TYPES) {
+                moves.add(PackedMove.of(from, to, pawnIndex, capturedPieceIndex, pieceFromPawn, 0));
+            }
+        } else {
+            moves.add(PackedMove.of(from, to, pawnIndex, capturedPieceIndex));
+        }
+    }
+
+    private static void addEnPassantMoves(IBitboardMatrix board, IGame game, Side side, int kingSquare, MoveList moves) {
+        Side enemySide = side.reverse();
+        Integer enemyLongMoveColumnIndex = game.getPawnLongMoveColumnIndex(enemySide);
+        if (enemyLongMoveColumnIndex == null) {
+            return;
+        }
+
+        //противник только что сделал длинный ход пешкой: она стоит на той же горизонтали, что и наши пешки, которые могут ее срубить
+        int rowIndex = side == Side.WHITE ? 4 : 3;
+        int capturedSquare = square(rowIndex, enemyLongMoveColumnIndex);
+        int to = square(rowIndex + side.getPawnMoveVector(), enemyLongMoveColumnIndex);
+        int enemyPawnIndex = pieceIndex(enemySide, PieceType.PAWN);
+
+        long occupied = board.getOccupied();
+        if (!contains(board.getPieces(enemySide, PieceType.PAWN), capturedSquare) || contains(occupied, to)) {
+            return;
+        }
+
+        long capturers = pawnAttacks(enemySide, to) & board.getPieces(side, PieceType.PAWN);
+        while (capturers != 0) {
+            int from = Long.numberOfTrailingZeros(capturers);
+            capturers &= capturers - 1;
+
+            long occupiedAfter = (occupied & ~bit(from) & ~bit(capturedSquare)) | bit(to);
+            long attackers = getAttackers(board, kingSquare, enemySide, occupiedAfter) & ~bit(capturedSquare);
+            if (attackers == 0) {
+                moves.add(PackedMove.of(from, to, pieceIndex(side, PieceType.PAWN), enemyPawnIndex, null, PackedMove.EN_PASSANT));
+            }
+        }
+    }
+
+    /**
+     * Добавляет ходы на все клетки targets (пустые или с фигурами противника)
+     */
+    private static void addMoves(IBitboardMatrix board, int from, int pieceIndex, long targets, MoveList moves) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(PackedMove.of(from, to, pieceIndex, getPieceIndex(board, to)));
+        }
+    }
+
+    private static int getPieceIndex(IBitboardMatrix board, int square) {
+        if (!contains(board.getOccupied(), square)) {
+            return NO_PIECE;
+        }
+        return board.getPiece(square).ordinal();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.chess.logic.bitboard;
+
+import java.util.stream.IntStream;
+
+/**
+ * Переиспользуемый буфер упакованных ходов (см. PackedMove). Создается один раз на ply и просто очищается перед генерацией.
+ * <p>
+ * У каждого хода есть еще и score - приоритет для сортировки (см. MoveOrdering). Генератор его не заполняет,
+ * а set() не трогает: менять ходы местами вместе с приоритетами - только через swap().
+ */
+public final class MoveList {
+
+    //максимально возможное количество легальных ходов в шахматной позиции - 218
+    public static final int MAX_MOVES = 256;
+
+    private final int[] moves = new int[MAX_MOVES];
+    private final int[] scores = new int[MAX_MOVES];
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int getScore(int index) {
+        return scores[index];
+    }
+
+    public void setScore(int index, int score) {
+        scores[index] = score;
+    }
+
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public IntStream stream() {
+        return IntStream.range(0, size).map(i -> moves[i]);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.chess.logic.bitboard;
+
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.PieceType;
+import com.example.chess.logic.objects.IBitboardMatrix;
+import com.example.chess.logic.objects.move.ExtendedMove;
+import com.example.chess.logic.objects.move.Move;
+import com.example.chess.logic.utils.ChessUtils;
+import com.google.common.base.Preconditions;
+import lombok.experimental.UtilityClass;
+
+import static com.example.chess.logic.bitboard.Bitboards.*;
+
+/**
+ * Ход, упакованный в int (чтобы генератор ходов ничего не аллоцировал):
+ * <pre>
+ * биты  0-5   square from
+ * биты  6-11  square to
+ * биты 12-14  PieceType.ordinal() фигуры, в которую превращается пешка (0 == PAWN == нет превращения)
+ * биты 15-18  pieceIndex фигуры, которая ходит
+ * биты 19-22  pieceIndex + 1 срубленной фигуры (0 - ничего не срубили)
+ * бит  23     взятие на проходе
+ * бит  24     рокировка
+ * бит  25     длинный ход пешкой
+ * </pre>
+ * NO_MOVE == 0 никогда не совпадает с реальным ходом, т.к. from != to.
+ */
+@UtilityClass
+@SuppressWarnings("WeakerAccess")
+public class PackedMove {
+
+    public static final int NO_MOVE = 0;
+
+    public static final int EN_PASSANT = 1 << 23;
+    public static final int CASTLING = 1 << 24;
+    public static final int PAWN_LONG_MOVE = 1 << 25;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int PIECE_MASK = 0xF;
+    private static final int PROMOTION_MASK = 0x7;
+
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int PIECE_SHIFT = 15;
+    private static final int CAPTURED_SHIFT = 19;
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    public static int of(int from, int to, int pieceIndex, int capturedPieceIndex, PieceType pieceFromPawn, int flags) {
+        return from
+                | to << TO_SHIFT
+                | (pieceFromPawn == null ? 0 : pieceFromPawn.ordinal()) << PROMOTION_SHIFT
+                | pieceIndex << PIECE_SHIFT
+                | (capturedPieceIndex + 1) << CAPTURED_SHIFT
+                | flags;
+    }
+
+    public static int of(int from, int to, int pieceIndex, int capturedPieceIndex) {
+        return of(from, to, pieceIndex, capturedPieceIndex, null, 0);
+    }
+
+    /**
+     * Упаковывает произвольный Move (например ExtendedMove или MoveDTO) относительно доски, на которой он будет сделан
+     */
+    public static int of(IBitboardMatrix board, Move move) {
+        int from = square(move.getRowIndexFrom(), move.getColumnIndexFrom());
+        int to = square(move.getRowIndexTo(), move.getColumnIndexTo());
+
+        Piece pieceFrom = board.getPiece(from);
+        Preconditions.checkNotNull(pieceFrom);
+
+        Piece capturedPiece = board.getPiece(to);
+        PieceType pieceFromPawn = null;
+        int flags = 0;
+
+        if (ChessUtils.isCastling(move, pieceFrom)) {
+            flags |= CASTLING;
+        } else if (ChessUtils.isEnPassant(board, move, pieceFrom)) {
+            flags |= EN_PASSANT;
+            capturedPiece = board.getPiece(square(move.getRowIndexFrom(), move.getColumnIndexTo()));
+        } else if (ChessUtils.isPawnTransformation(move, pieceFrom)) {
+            pieceFromPawn = Preconditions.checkNotNull(move.getPieceFromPawn(), "Piece from pawn can't be null");
+        } else if (ChessUtils.isLongPawnMove(move, pieceFrom)) {
+            flags |= PAWN_LONG_MOVE;
+        }
+
+        return of(from, to, pieceFrom.ordinal(), capturedPiece == null ? NO_PIECE : capturedPiece.ordinal(), pieceFromPawn, flags);
+    }
+
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    public static int pieceIndex(int move) {
+        return (move >>> PIECE_SHIFT) & PIECE_MASK;
+    }
+
+    /**
+     * @return pieceIndex срубленной фигуры или NO_PIECE. Для взятия на проходе - пешка, которая стоит НЕ на to
+     */
+    public static int capturedPieceIndex(int move) {
+        return ((move >>> CAPTURED_SHIFT) & PIECE_MASK) - 1;
+    }
+
+    public static boolean isCapture(int move) {
+        return ((move >>> CAPTURED_SHIFT) & PIECE_MASK) != 0;
+    }
+
+    public static boolean isPawnTransformation(int move) {
+        return ((move >>> PROMOTION_SHIFT) & PROMOTION_MASK) != 0;
+    }
+
+    /**
+     * @return фигура, в которую превращается пешка или null
+     */
+    public static PieceType getPieceFromPawn(int move) {
+        int ordinal = (move >>> PROMOTION_SHIFT) & PROMOTION_MASK;
+        return ordinal == 0 ? null : PIECE_TYPES[ordinal];
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    public static boolean isLongPawnMove(int move) {
+        return (move & PAWN_LONG_MOVE) != 0;
+    }
+
+    /**
+     * Объекты создаются только здесь: для ходов, которые реально нужны снаружи (дерево GameContext, ответ бота)
+     */
+    public static ExtendedMove toExtendedMove(int move) {
+        //при взятии на проходе клетка to пустая (так же как ее видит CellsMatrix)
+        Piece pieceTo = isEnPassant(move) ? null : piece(capturedPieceIndex(move));
+        return new ExtendedMove(cell(from(move), piece(pieceIndex(move))), cell(to(move), pieceTo), getPieceFromPawn(move));
+    }
+}
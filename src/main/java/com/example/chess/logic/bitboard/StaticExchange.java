@@ -0,0 +1,122 @@
+package com.example.chess.logic.bitboard;
+
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.objects.IBitboardMatrix;
+import lombok.experimental.UtilityClass;
+
+import java.util.Arrays;
+
+import static com.example.chess.logic.bitboard.AttackTables.bishopAttacks;
+import static com.example.chess.logic.bitboard.AttackTables.rookAttacks;
+
+/**
+ * Static Exchange Evaluation (SEE): чем закончится размен на одной клетке, если стороны по очереди рубят на ней
+ * самой дешевой фигурой и каждая может остановиться, когда ей выгодно.
+ * <p>
+ * Ходы не выполняются и доска не копируется - все считается по битбордам атакующих/защищающих клетку фигур:
+ * - после каждого взятия фигура убирается из occupied и атаки дальнобойных фигур на клетку пересчитываются,
+ * так что слон/ладья/ферзь, стоявшие "за спиной" (рентген), подключаются к размену
+ * - король рубит только если после этого клетку больше никто не бьет
+ * - связки не учитываются (как и в обычных реализациях SEE)
+ * <p>
+ * Стоимость фигур - PieceType.getValue() (как в рейтингах legacy-бота).
+ */
+@UtilityClass
+@SuppressWarnings("WeakerAccess")
+public class StaticExchange {
+
+    private static final PieceType[] ATTACKERS_ORDER = {PieceType.PAWN, PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN, PieceType.KING};
+    //больше взятий на одной клетке не бывает: фигур 32, плюс ход, который начал размен
+    private static final int MAX_EXCHANGE_LENGTH = 33;
+
+    /**
+     * Размен на клетке square, куда только что пошла фигура. Следующее взятие - за nextTurnSide.
+     *
+     * @param firstValue что срубил ход, начавший размен (0 - если клетка была пустой)
+     * @return материальный итог после каждого взятия с точки зрения того, кто начал размен:
+     * [0] = firstValue, [n] - после n-го ответного взятия. Размен идет "до талого", кто где остановится - см. getExchangeResult()
+     */
+    public static int[] getExchangeValues(IBitboardMatrix board, int square, Side nextTurnSide, int firstValue) {
+        int[] values = new int[MAX_EXCHANGE_LENGTH];
+        values[0] = firstValue;
+        int count = 1;
+
+        long occupied = board.getOccupied();
+        long diagonalSliders = getPieces(board, PieceType.BISHOP) | getPieces(board, PieceType.QUEEN);
+        long straightSliders = getPieces(board, PieceType.ROOK) | getPieces(board, PieceType.QUEEN);
+        long attackers = MoveGenerator.getAttackers(board, square, Side.WHITE, occupied)
+                | MoveGenerator.getAttackers(board, square, Side.BLACK, occupied);
+
+        int targetValue = board.getPiece(square).getType().getValue();
+        Side side = nextTurnSide;
+
+        while (true) {
+            long sideAttackers = attackers & board.getPieces(side);
+            if (sideAttackers == 0) {
+                break;
+            }
+
+            PieceType attackerType = null;
+            long attackerBit = 0;
+            for (PieceType pieceType : ATTACKERS_ORDER) {
+                long bitboard = sideAttackers & board.getPieces(side, pieceType);
+                if (bitboard != 0) {
+                    attackerType = pieceType;
+                    attackerBit = bitboard & -bitboard;
+                    break;
+                }
+            }
+
+            occupied ^= attackerBit;
+            //фигура ушла с линии - за ней могла открыться дальнобойная фигура (рентген)
+            if (attackerType == PieceType.PAWN || attackerType == PieceType.BISHOP || attackerType == PieceType.QUEEN) {
+                attackers |= bishopAttacks(square, occupied) & diagonalSliders;
+            }
+            if (attackerType == PieceType.ROOK || attackerType == PieceType.QUEEN) {
+                attackers |= rookAttacks(square, occupied) & straightSliders;
+            }
+            attackers &= occupied;
+
+            if (attackerType == PieceType.KING && (attackers & board.getPieces(side.reverse())) != 0) {
+                //король не может рубить на защищенной клетке
+                break;
+            }
+
+            values[count] = values[count - 1] + (side == nextTurnSide ? -targetValue : targetValue);
+            count++;
+
+            targetValue = attackerType.getValue();
+            side = side.reverse();
+        }
+
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Итог размена, если каждая сторона останавливается в самый выгодный для себя момент.
+     * Идем с конца: сторона, которая может сделать n-е взятие, выбирает между values[n - 1] (не рубить) и итогом продолжения.
+     *
+     * @param exchangeValues результат getExchangeValues()
+     */
+    public static int getExchangeResult(int[] exchangeValues) {
+        int result = exchangeValues[exchangeValues.length - 1];
+        for (int n = exchangeValues.length - 1; n > 0; n--) {
+            if (n % 2 == 1) {
+                //n-е взятие делает противник того, кто начал размен
+                result = Math.min(exchangeValues[n - 1], result);
+            } else {
+                result = Math.max(exchangeValues[n - 1], result);
+            }
+        }
+        return result;
+    }
+
+    public static int evaluate(IBitboardMatrix board, int square, Side nextTurnSide, int firstValue) {
+        return getExchangeResult(getExchangeValues(board, square, nextTurnSide, firstValue));
+    }
+
+    private static long getPieces(IBitboardMatrix board, PieceType pieceType) {
+        return board.getPieces(Side.WHITE, pieceType) | board.getPieces(Side.BLACK, pieceType);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.chess.logic.bitboard;
+
+import com.example.chess.enums.Side;
+import com.example.chess.logic.objects.IMatrix;
+import com.example.chess.logic.objects.game.IGame;
+import lombok.experimental.UtilityClass;
+
+import java.util.Random;
+
+import static com.example.chess.logic.ChessConstants.BOARD_SIZE;
+import static com.example.chess.logic.bitboard.Bitboards.*;
+
+/**
+ * 64-битный ключ позиции (Zobrist hashing): XOR случайных чисел для каждой пары (фигура, клетка)
+ * плюс очередь хода, рокировки и вертикаль длинного хода пешки (см. FakeGame/GameFeatures).
+ * <p>
+ * Ключ складывается из двух частей:
+ * - piecesKey - только фигуры. Его хранит сама доска (IMatrix.getPiecesKey()) и обновляет на каждом executeMove()
+ * - stateKey - очередь хода + состояние IGame. Считается за O(1), поэтому отдельно его нигде не хранят
+ * (кроме SearchBoard, которая поддерживает полный ключ инкрементально)
+ * <p>
+ * Вертикаль длинного хода пешки учитывается только для того, кто ходил последним: FakeGame не сбрасывает ее у соперника,
+ * пока тот сам не походит, и такой "хвост" на позицию уже не влияет (взять на проходе можно только сразу).
+ * <p>
+ * Числа генерируются из фиксированного seed-а, так что ключи одинаковы между запусками (удобно для отладки).
+ */
+@UtilityClass
+@SuppressWarnings("WeakerAccess")
+public class Zobrist {
+
+    private static final long SEED = 0x5EED_C4E55L;
+
+    //[pieceIndex][square]
+    private static final long[][] PIECE_KEYS = new long[PIECES_COUNT][SQUARES_COUNT];
+    //[side.ordinal()]
+    private static final long[] SHORT_CASTLING_KEYS = new long[Side.values().length];
+    private static final long[] LONG_CASTLING_KEYS = new long[Side.values().length];
+    //[columnIndex]
+    private static final long[] PAWN_LONG_MOVE_KEYS = new long[BOARD_SIZE];
+    //ключ добавляется, если ходят черные
+    private static final long BLACK_TO_MOVE_KEY;
+    //[botSide.ordinal()]
+    private static final long[] BOT_SIDE_KEYS = new long[Side.values().length];
+
+    static {
+        Random random = new Random(SEED);
+
+        for (int pieceIndex = 0; pieceIndex < PIECES_COUNT; pieceIndex++) {
+            for (int square = 0; square < SQUARES_COUNT; square++) {
+                PIECE_KEYS[pieceIndex][square] = random.nextLong();
+            }
+        }
+        for (Side side : Side.values()) {
+            SHORT_CASTLING_KEYS[side.ordinal()] = random.nextLong();
+            LONG_CASTLING_KEYS[side.ordinal()] = random.nextLong();
+        }
+        for (int columnIndex = 0; columnIndex < BOARD_SIZE; columnIndex++) {
+            PAWN_LONG_MOVE_KEYS[columnIndex] = random.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+        for (Side side : Side.values()) {
+            BOT_SIDE_KEYS[side.ordinal()] = random.nextLong();
+        }
+    }
+
+    public static long pieceKey(int pieceIndex, int square) {
+        return pieceIndex == NO_PIECE ? 0 : PIECE_KEYS[pieceIndex][square];
+    }
+
+    public static long sideKey(Side nextTurnSide) {
+        return nextTurnSide == Side.BLACK ? BLACK_TO_MOVE_KEY : 0;
+    }
+
+    /**
+     * XOR с этим ключом меняет очередь хода на противоположную
+     */
+    public static long flipSideKey() {
+        return BLACK_TO_MOVE_KEY;
+    }
+
+    /**
+     * Оценки legacy-бота (Rating, GameContext.getContextTotal()) считаются с точки зрения бота, а не того, кто ходит.
+     * Поэтому в ключ таких оценок подмешивается сторона бота.
+     */
+    public static long botSideKey(Side botSide) {
+        return BOT_SIDE_KEYS[botSide.ordinal()];
+    }
+
+    public static long castlingKey(Side side, boolean isShortCastlingAvailable, boolean isLongCastlingAvailable) {
+        long key = 0;
+        if (isShortCastlingAvailable) {
+            key ^= SHORT_CASTLING_KEYS[side.ordinal()];
+        }
+        if (isLongCastlingAvailable) {
+            key ^= LONG_CASTLING_KEYS[side.ordinal()];
+        }
+        return key;
+    }
+
+    /**
+     * @param columnIndex вертикаль длинного хода пешки или null
+     */
+    public static long pawnLongMoveKey(Integer columnIndex) {
+        return columnIndex == null ? 0 : PAWN_LONG_MOVE_KEYS[columnIndex];
+    }
+
+    /**
+     * Полный пересчет piecesKey (для начальной загрузки доски и для проверок инкрементального ключа)
+     */
+    public static long getPiecesKey(IMatrix matrix) {
+        return matrix.allPiecesStream()
+                .filter(cell -> !cell.isEmpty())
+                .mapToLong(cell -> pieceKey(cell.getPiece().ordinal(), square(cell.getPoint())))
+                .reduce(0, (a, b) -> a ^ b);
+    }
+
+    public static long getStateKey(IGame game, Side nextTurnSide) {
+        long key = sideKey(nextTurnSide) ^ pawnLongMoveKey(game.getPawnLongMoveColumnIndex(nextTurnSide.reverse()));
+        for (Side side : Side.values()) {
+            key ^= castlingKey(side, game.isShortCastlingAvailable(side), game.isLongCastlingAvailable(side));
+        }
+        return key;
+    }
+
+    /**
+     * Ключ позиции, в которой ход за nextTurnSide
+     */
+    public static long getKey(IMatrix matrix, IGame game, Side nextTurnSide) {
+        return matrix.getPiecesKey() ^ getStateKey(game, nextTurnSide);
+    }
+
+    /**
+     * Очередь хода определяется по четности matrix.getPosition()
+     */
+    public static long getKey(IMatrix matrix, IGame game) {
+        return getKey(matrix, game, Side.getNextTurnSideByPosition(matrix.getPosition()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.chess.logic.objects;
+
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.bitboard.Zobrist;
+import com.example.chess.logic.objects.move.Move;
+import com.example.chess.logic.utils.Immutable;
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+
+import static com.example.chess.logic.ChessConstants.*;
+import static com.example.chess.logic.bitboard.Bitboards.*;
+import static com.example.chess.logic.utils.ChessUtils.*;
+
+/**
+ * Битборд-представление доски: по одному long-у на каждую фигуру (Piece.ordinal()) и на каждую сторону.
+ * В отличие от CellsMatrix executeMove() копирует 14 long-ов, а не пересоздает 64 CellDTO.
+ * CellDTO отдаются из заранее созданного кэша (см. Bitboards.cell).
+ */
+public final class BitboardMatrix implements IBitboardMatrix, Immutable {
+
+    @Getter
+    private final int position;
+    private final long[] pieces;
+    private final long[] sides;
+    private final int[] kingSquares;
+    @Getter
+    private long piecesKey;
+
+    private BitboardMatrix(int position) {
+        this.position = position;
+        this.pieces = new long[PIECES_COUNT];
+        this.sides = new long[Side.values().length];
+        this.kingSquares = new int[]{NO_SQUARE, NO_SQUARE};
+    }
+
+    private BitboardMatrix(int position, BitboardMatrix prevMatrix) {
+        this.position = position;
+        this.pieces = prevMatrix.pieces.clone();
+        this.sides = prevMatrix.sides.clone();
+        this.kingSquares = prevMatrix.kingSquares.clone();
+        this.piecesKey = prevMatrix.piecesKey;
+    }
+
+    /**
+     * Снимок чужих массивов (например SearchBoard), массивы копируются
+     */
+    BitboardMatrix(int position, long[] pieces, long[] sides, int[] kingSquares, long piecesKey) {
+        this.position = position;
+        this.pieces = pieces.clone();
+        this.sides = sides.clone();
+        this.kingSquares = kingSquares.clone();
+        this.piecesKey = piecesKey;
+    }
+
+    public static BitboardMatrix of(IMatrix matrix) {
+        if (matrix instanceof BitboardMatrix) {
+            return (BitboardMatrix) matrix;
+        }
+
+        BitboardMatrix result = new BitboardMatrix(matrix.getPosition());
+        matrix.allPiecesStream()
+                .filter(cell -> !cell.isEmpty())
+                .forEach(cell -> result.setPiece(square(cell.getRowIndex(), cell.getColumnIndex()), cell.getPiece()));
+        return result;
+    }
+
+    @Override
+    public long getPieces(Piece piece) {
+        return pieces[piece.ordinal()];
+    }
+
+    @Override
+    public long getPieces(Side side, PieceType pieceType) {
+        return pieces[pieceIndex(side, pieceType)];
+    }
+
+    @Override
+    public long getPieces(Side side) {
+        return sides[side.ordinal()];
+    }
+
+    @Override
+    public long getOccupied() {
+        return sides[Side.WHITE.ordinal()] | sides[Side.BLACK.ordinal()];
+    }
+
+    @Override
+    public Piece getPiece(int square) {
+        long bit = bit(square);
+        if ((getOccupied() & bit) == 0) {
+            return null;
+        }
+
+        int from = (sides[Side.WHITE.ordinal()] & bit) != 0 ? 0 : PieceType.values().length;
+        for (int pieceIndex = from; pieceIndex < from + PieceType.values().length; pieceIndex++) {
+            if ((pieces[pieceIndex] & bit) != 0) {
+                return piece(pieceIndex);
+            }
+        }
+
+        throw new IllegalStateException("Side bitboard is inconsistent with piece bitboards");
+    }
+
+    @Override
+    public BitboardMatrix executeMove(Move move) {
+
+        BitboardMatrix nextMatrix = new BitboardMatrix(position + 1, this);
+        nextMatrix.applyMove(move);
+        return nextMatrix;
+    }
+
+    /**
+     * Повторяет логику CellsMatrix.Builder.executeMove(), но над битбордами
+     */
+    private void applyMove(Move move) {
+        int squareFrom = square(move.getRowIndexFrom(), move.getColumnIndexFrom());
+        int squareTo = square(move.getRowIndexTo(), move.getColumnIndexTo());
+
+        Piece pieceFrom = getPiece(squareFrom);
+        Preconditions.checkNotNull(pieceFrom);
+
+        if (isCastling(move, pieceFrom)) {
+            int rookColumnIndexFrom;
+            int rookColumnIndexTo;
+
+            if (isLongCastling(move, pieceFrom)) {
+                rookColumnIndexFrom = ROOK_LONG_COLUMN_INDEX;
+                rookColumnIndexTo = move.getColumnIndexFrom() + 1;
+            } else {
+                rookColumnIndexFrom = ROOK_SHORT_COLUMN_INDEX;
+                rookColumnIndexTo = move.getColumnIndexFrom() - 1;
+            }
+
+            int rookSquareFrom = square(move.getRowIndexFrom(), rookColumnIndexFrom);
+            Piece rook = cutPiece(rookSquareFrom);
+            setPiece(square(move.getRowIndexFrom(), rookColumnIndexTo), rook);
+        } else if (isEnPassant(this, move, pieceFrom)) {
+            cutPiece(square(move.getRowIndexFrom(), move.getColumnIndexTo()));
+        } else if (isPawnTransformation(move, pieceFrom)) {
+            Preconditions.checkNotNull(move.getPieceFromPawn(), "Piece from pawn can't be null");
+            pieceFrom = Piece.of(pieceFrom.getSide(), move.getPieceFromPawn());
+        }
+
+        cutPiece(squareFrom);
+        cutPiece(squareTo);
+        setPiece(squareTo, pieceFrom);
+    }
+
+    private void setPiece(int square, Piece piece) {
+        if (piece == null) {
+            return;
+        }
+
+        long bit = bit(square);
+        pieces[piece.ordinal()] |= bit;
+        sides[piece.getSide().ordinal()] |= bit;
+        piecesKey ^= Zobrist.pieceKey(piece.ordinal(), square);
+
+        if (piece.isKing()) {
+            kingSquares[piece.getSide().ordinal()] = square;
+        }
+    }
+
+    private Piece cutPiece(int square) {
+        Piece piece = getPiece(square);
+        if (piece != null) {
+            long mask = ~bit(square);
+            pieces[piece.ordinal()] &= mask;
+            sides[piece.getSide().ordinal()] &= mask;
+            piecesKey ^= Zobrist.pieceKey(piece.ordinal(), square);
+
+            if (piece.isKing() && kingSquares[piece.getSide().ordinal()] == square) {
+                kingSquares[piece.getSide().ordinal()] = NO_SQUARE;
+            }
+        }
+        return piece;
+    }
+
+    @Override
+    public int getKingSquare(Side side) {
+        return kingSquares[side.ordinal()];
+    }
+}
@@ -4,14 +4,15 @@ import com.example.chess.dto.ArrangementDTO;
 import com.example.chess.dto.CellDTO;
 import com.example.chess.dto.PointDTO;
 import com.example.chess.entity.History;
+import com.example.chess.entity.PositionSnapshot;
 import com.example.chess.enums.Piece;
 import com.example.chess.enums.PieceType;
 import com.example.chess.enums.Side;
 import com.example.chess.exceptions.KingNotFoundException;
+import com.example.chess.logic.bitboard.Zobrist;
 import com.example.chess.logic.debug.Debug;
 import com.example.chess.logic.objects.move.Move;
 import com.example.chess.logic.utils.BiIntFunction;
-import com.example.chess.logic.utils.CommonUtils;
 import com.example.chess.logic.utils.Immutable;
 import com.google.common.base.Preconditions;
 import lombok.AccessLevel;
@@ -24,12 +25,15 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.example.chess.logic.ChessConstants.*;
+import static com.example.chess.logic.bitboard.Bitboards.square;
 import static com.example.chess.logic.utils.ChessUtils.*;
 
-public final class CellsMatrix implements Immutable {
+public final class CellsMatrix implements IMatrix, Immutable {
 
     @Getter
     private final int position;
+    @Getter
+    private long piecesKey;
     private final CellDTO[][] matrix = new CellDTO[BOARD_SIZE][BOARD_SIZE];
     private Map<Side, PointDTO> kingPoints = new EnumMap<>(Side.class);
 
@@ -42,6 +46,7 @@ public final class CellsMatrix implements Immutable {
 
                 Piece piece = pieceGenerator.apply(rowIndex, columnIndex);
                 matrix[rowIndex][columnIndex] = CellDTO.valueOf(rowIndex, columnIndex, piece);
+                piecesKey ^= pieceKey(rowIndex, columnIndex, piece);
 
                 if (piece != null && piece.getType() == PieceType.KING) {
                     kingPoints.put(piece.getSide(), PointDTO.valueOf(rowIndex, columnIndex));
@@ -50,22 +55,28 @@ public final class CellsMatrix implements Immutable {
         }
     }
 
+    @Override
     public CellDTO getCell(int rowIndex, int columnIndex) {
         checkPoint(rowIndex, columnIndex);
         return matrix[rowIndex][columnIndex];
     }
 
+    @Override
     public CellDTO getCell(PointDTO point) {
         return getCell(point.getRowIndex(), point.getColumnIndex());
     }
 
+    private static long pieceKey(int rowIndex, int columnIndex, Piece piece) {
+        return piece == null ? 0 : Zobrist.pieceKey(piece.ordinal(), square(rowIndex, columnIndex));
+    }
+
     private void checkPoint(int rowIndex, int columnIndex) {
         Preconditions.checkElementIndex(rowIndex, BOARD_SIZE, "Out of board point");
         Preconditions.checkElementIndex(columnIndex, BOARD_SIZE, "Out of board point");
     }
 
+    @Override
     public CellsMatrix executeMove(Move move) {
-        Debug.movesExecuted.incrementAndGet();
 
         return builder(position + 1, this)
                 .executeMove(move)
@@ -83,12 +94,26 @@ public final class CellsMatrix implements Immutable {
         }).new Builder();
     }
 
+    /**
+     * Произвольная расстановка (например из FEN). pieceGenerator(rowIndex, columnIndex) - фигура на клетке или null
+     */
+    public static CellsMatrix ofArrangement(int position, BiIntFunction<Piece> pieceGenerator) {
+        return new CellsMatrix(position, pieceGenerator);
+    }
+
     public static CellsMatrix ofHistory(int newPosition, List<History> historyList) {
-        return builder(newPosition, historyList).build();
+        return builder(newPosition, START_ARRANGEMENT_GENERATOR, historyList).build();
+    }
+
+    /**
+     * Расстановка снапшота + ходы после него (tail - history с позициями snapshot.position + 1 .. newPosition)
+     */
+    public static CellsMatrix ofSnapshot(int newPosition, PositionSnapshot snapshot, List<History> tail) {
+        return builder(newPosition, snapshot::getPiece, tail).build();
     }
 
-    private static Builder builder(int position, List<History> historyList) {
-        Builder builder = new CellsMatrix(position, START_ARRANGEMENT_GENERATOR).new Builder();
+    private static Builder builder(int position, BiIntFunction<Piece> initialArrangement, List<History> historyList) {
+        Builder builder = new CellsMatrix(position, initialArrangement).new Builder();
         historyList.forEach(builder::executeMove);
         return builder;
     }
@@ -170,6 +195,7 @@ public final class CellsMatrix implements Immutable {
         private Builder setPiece(int rowIndex, int columnIndex, Piece piece) {
             CellDTO cell = getCell(rowIndex, columnIndex);
             CellsMatrix.this.matrix[rowIndex][columnIndex] = cell.switchPiece(piece);
+            piecesKey ^= pieceKey(rowIndex, columnIndex, cell.getPiece()) ^ pieceKey(rowIndex, columnIndex, piece);
             return this;
         }
 
@@ -185,6 +211,7 @@ public final class CellsMatrix implements Immutable {
     /**
      * convert matrix (List<List<T>> x8x8) to simple list (List<T> x64)
      */
+    @Override
     public Stream<CellDTO> allPiecesStream() {
         if (Debug.IS_PARALLEL) {
             return Arrays.stream(matrix).parallel().flatMap(Arrays::stream);
@@ -193,16 +220,19 @@ public final class CellsMatrix implements Immutable {
         }
     }
 
+    @Override
     public Stream<CellDTO> allPiecesBySideStream(Side side) {
         return allPiecesStream()
                 .filter(containsSide(side));
     }
 
+    @Override
     public Stream<CellDTO> includePiecesStream(Side side, PieceType... pieceTypes) {
         return allPiecesStream()
                 .filter(containsPiecesOptimized(side, pieceTypes));
     }
 
+    @Override
     public Stream<CellDTO> excludePiecesStream(Side side, PieceType... pieceTypes) {
         return allPiecesStream()
                 .filter(notContainsPiecesOptimized(side, pieceTypes));
@@ -247,12 +277,14 @@ public final class CellsMatrix implements Immutable {
         return cell -> cell.getSide() == side;
     }
 
+    @Override
     public Set<PointDTO> findPiecesCoords(Side side, PieceType... pieceTypes) {
         return includePiecesStream(side, pieceTypes)
                 .map(CellDTO::getPoint)
                 .collect(Collectors.toSet());
     }
 
+    @Override
     public PointDTO getKingPoint(Side side) throws KingNotFoundException {
         PointDTO kingPoint = kingPoints.get(side);
         if (kingPoint == null) {
@@ -261,27 +293,4 @@ public final class CellsMatrix implements Immutable {
 
         return kingPoint;
     }
-
-    public void print() {
-        for (int i = 7; i >= 0; i--) {
-            for (int j = 7; j >= 0; j--) {
-                System.out.print(cellToStr(matrix[i][j]) + "\t");
-            }
-            System.out.println();
-        }
-    }
-
-    private String cellToStr(CellDTO cell) {
-        return cell.getPoint() + ": " + CommonUtils.getPieceName(cell.getPieceType(), true) + sideToStr(cell.getSide());
-    }
-
-    private String sideToStr(Side side) {
-        if (side == null) {
-            return "( )";
-        } else if (side == Side.WHITE) {
-            return "(W)";
-        } else {
-            return "(B)";
-        }
-    }
 }
@@ -0,0 +1,132 @@
+package com.example.chess.logic.objects;
+
+import com.example.chess.dto.CellDTO;
+import com.example.chess.dto.PointDTO;
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.exceptions.KingNotFoundException;
+import com.example.chess.logic.bitboard.MoveGenerator;
+import com.google.common.base.Preconditions;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.example.chess.logic.ChessConstants.BOARD_SIZE;
+import static com.example.chess.logic.bitboard.Bitboards.*;
+
+/**
+ * Доска, которая умеет отдавать битборды. Все запросы IMatrix выражены через них,
+ * поэтому реализациям (BitboardMatrix, SearchBoard) достаточно хранить сами битборды.
+ */
+public interface IBitboardMatrix extends IMatrix {
+
+    long getPieces(Side side, PieceType pieceType);
+
+    long getPieces(Side side);
+
+    Piece getPiece(int square);
+
+    int getKingSquare(Side side);
+
+    default long getPieces(Piece piece) {
+        return getPieces(piece.getSide(), piece.getType());
+    }
+
+    default long getOccupied() {
+        return getPieces(Side.WHITE) | getPieces(Side.BLACK);
+    }
+
+    /**
+     * Все клетки, которые бьет side. Король противника при этом считается прозрачным,
+     * так что результат можно использовать для проверки ходов этого короля.
+     * SearchBoard кэширует карты атак (а так же checkers/pinned) на каждый ply.
+     */
+    default long getAttackedSquares(Side side) {
+        return MoveGenerator.getAttackedSquares(this, side);
+    }
+
+    /**
+     * Фигуры противника, которые объявили шах королю kingSide
+     */
+    default long getCheckers(Side kingSide) throws KingNotFoundException {
+        return MoveGenerator.getAttackers(this, getExistingKingSquare(kingSide), kingSide.reverse(), getOccupied());
+    }
+
+    /**
+     * Фигуры side, связанные с собственным королем
+     */
+    default long getPinned(Side side) throws KingNotFoundException {
+        return MoveGenerator.getPinned(this, getExistingKingSquare(side), side, getOccupied());
+    }
+
+    default boolean isUnderCheck(Side kingSide) throws KingNotFoundException {
+        return getCheckers(kingSide) != 0;
+    }
+
+    default int getExistingKingSquare(Side side) throws KingNotFoundException {
+        int kingSquare = getKingSquare(side);
+        if (kingSquare == NO_SQUARE) {
+            throw new KingNotFoundException(this, side);
+        }
+        return kingSquare;
+    }
+
+    default CellDTO getCell(int square) {
+        return cell(square, getPiece(square));
+    }
+
+    @Override
+    default CellDTO getCell(int rowIndex, int columnIndex) {
+        Preconditions.checkElementIndex(rowIndex, BOARD_SIZE, "Out of board point");
+        Preconditions.checkElementIndex(columnIndex, BOARD_SIZE, "Out of board point");
+        return getCell(square(rowIndex, columnIndex));
+    }
+
+    @Override
+    default CellDTO getCell(PointDTO point) {
+        return getCell(square(point));
+    }
+
+    @Override
+    default Stream<CellDTO> allPiecesStream() {
+        return IntStream.range(0, SQUARES_COUNT).mapToObj(this::getCell);
+    }
+
+    @Override
+    default Stream<CellDTO> allPiecesBySideStream(Side side) {
+        return squaresStream(getPieces(side)).mapToObj(this::getCell);
+    }
+
+    @Override
+    default Stream<CellDTO> includePiecesStream(Side side, PieceType... pieceTypes) {
+        long bitboard = EMPTY;
+        for (PieceType pieceType : pieceTypes) {
+            bitboard |= getPieces(side, pieceType);
+        }
+        return squaresStream(bitboard).mapToObj(this::getCell);
+    }
+
+    @Override
+    default Stream<CellDTO> excludePiecesStream(Side side, PieceType... pieceTypes) {
+        long bitboard = getPieces(side);
+        for (PieceType pieceType : pieceTypes) {
+            bitboard &= ~getPieces(side, pieceType);
+        }
+        return squaresStream(bitboard).mapToObj(this::getCell);
+    }
+
+    @Override
+    default Set<PointDTO> findPiecesCoords(Side side, PieceType... pieceTypes) {
+        return includePiecesStream(side, pieceTypes)
+                .map(CellDTO::getPoint)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    default PointDTO getKingPoint(Side side) throws KingNotFoundException {
+        return point(getExistingKingSquare(side));
+    }
+}
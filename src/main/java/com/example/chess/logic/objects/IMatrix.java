@@ -0,0 +1,59 @@
+package com.example.chess.logic.objects;
+
+import com.example.chess.dto.CellDTO;
+import com.example.chess.dto.PointDTO;
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.exceptions.KingNotFoundException;
+import com.example.chess.logic.objects.move.Move;
+import com.example.chess.logic.utils.CommonUtils;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.example.chess.logic.ChessConstants.BOARD_SIZE;
+
+/**
+ * Общий контракт для представлений доски (CellsMatrix - для UI/истории, BitboardMatrix - для бота).
+ * MoveHelper и калькуляторы рейтинга работают только через этот интерфейс.
+ */
+public interface IMatrix {
+
+    int getPosition();
+
+    /**
+     * Zobrist-ключ расстановки фигур (без очереди хода и состояния IGame - см. Zobrist.getKey()).
+     * Поддерживается инкрементально на каждом executeMove()
+     */
+    long getPiecesKey();
+
+    CellDTO getCell(int rowIndex, int columnIndex);
+
+    CellDTO getCell(PointDTO point);
+
+    IMatrix executeMove(Move move);
+
+    /**
+     * all 64 cells (including empty)
+     */
+    Stream<CellDTO> allPiecesStream();
+
+    Stream<CellDTO> allPiecesBySideStream(Side side);
+
+    Stream<CellDTO> includePiecesStream(Side side, PieceType... pieceTypes);
+
+    Stream<CellDTO> excludePiecesStream(Side side, PieceType... pieceTypes);
+
+    Set<PointDTO> findPiecesCoords(Side side, PieceType... pieceTypes);
+
+    PointDTO getKingPoint(Side side) throws KingNotFoundException;
+
+    default void print() {
+        for (int rowIndex = BOARD_SIZE - 1; rowIndex >= 0; rowIndex--) {
+            for (int columnIndex = BOARD_SIZE - 1; columnIndex >= 0; columnIndex--) {
+                System.out.print(CommonUtils.cellToString(getCell(rowIndex, columnIndex)) + "\t");
+            }
+            System.out.println();
+        }
+    }
+}
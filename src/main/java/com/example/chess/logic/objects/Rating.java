@@ -64,12 +64,12 @@ public class Rating {
         }
     }
 
-    public void print(int tabsCount) {
+    public String toString(int tabsCount) {
         String str = CommonUtils.tabs(tabsCount) + param + ": " + param.getFactor() + "x" + value;
         if (reasonMove != null) {
             str += " [" + reasonMove + "]";
         }
-        System.out.println(str);
+        return str;
     }
 
 }
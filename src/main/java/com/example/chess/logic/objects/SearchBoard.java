@@ -0,0 +1,451 @@
+package com.example.chess.logic.objects;
+
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.bitboard.MoveGenerator;
+import com.example.chess.logic.bitboard.MoveList;
+import com.example.chess.logic.bitboard.PackedMove;
+import com.example.chess.logic.bitboard.Zobrist;
+import com.example.chess.logic.objects.game.IGame;
+import com.example.chess.logic.objects.move.Move;
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+import static com.example.chess.logic.ChessConstants.ROOK_LONG_COLUMN_INDEX;
+import static com.example.chess.logic.ChessConstants.ROOK_SHORT_COLUMN_INDEX;
+import static com.example.chess.logic.bitboard.Bitboards.*;
+
+/**
+ * Изменяемая доска для перебора: makeMove() меняет ее на месте, unmakeMove() откатывает последний ход.
+ * В отличие от BitboardMatrix/CellsMatrix на каждый ход ничего не аллоцируется - все изменения пишутся в заранее
+ * созданные стеки, поэтому одного экземпляра на поток хватает на весь перебор (см. ofCurrentThread()).
+ * <p>
+ * Заодно хранит состояние FakeGame (рокировки и длинные ходы пешек) и откатывает его вместе с фигурами.
+ * Правила обновления этого состояния повторяют FakeGame.Builder.afterMove() один в один.
+ * <p>
+ * Полный Zobrist-ключ позиции (фигуры + очередь хода + состояние FakeGame) обновляется на makeMove() по XOR-у
+ * и восстанавливается из стека на unmakeMove(). Всегда равен Zobrist.getKey(this, this).
+ * <p>
+ * Карты атак, checkers и pinned обеих сторон привязаны к ply: считаются не больше одного раза на позицию
+ * (при первом запросе после makeMove()), а unmakeMove() просто возвращается к уже посчитанным значениям предыдущего ply.
+ * <p>
+ * Экземпляр НЕ потокобезопасен и не должен утекать из перебора: если нужна неизменяемая доска - используй snapshot().
+ */
+public final class SearchBoard implements IBitboardMatrix, IGame {
+
+    public static final int MAX_PLY = 256;
+
+    //за один ход меняется не больше 4-х клеток (рокировка: король и ладья)
+    private static final int MAX_CHANGES_PER_MOVE = 4;
+    private static final int NO_COLUMN = -1;
+
+    private static final int SHORT_CASTLING = 1;
+    private static final int LONG_CASTLING = 2;
+
+    //биты attackInfoFlags: что уже посчитано для текущего ply. Сдвиг на side.ordinal()
+    private static final int ATTACKED_SQUARES_FLAG = 1;
+    private static final int CHECKERS_FLAG = 1 << 2;
+    private static final int PINNED_FLAG = 1 << 4;
+
+    private static final ThreadLocal<SearchBoard> CURRENT_THREAD_BOARD = ThreadLocal.withInitial(SearchBoard::new);
+
+    private final long[] pieces = new long[PIECES_COUNT];
+    private final long[] sides = new long[Side.values().length];
+    private final int[] mailbox = new int[SQUARES_COUNT];
+    private final int[] kingSquares = new int[Side.values().length];
+
+    //[side.ordinal()]
+    private final int[] castlingRights = new int[Side.values().length];
+    private final int[] pawnLongMoveColumnIndexes = new int[Side.values().length];
+
+    @Getter
+    private int position;
+    @Getter
+    private int ply;
+    @Getter
+    private long piecesKey;
+    @Getter
+    private long key;
+
+    //стек измененных клеток: square и pieceIndex, который стоял там до хода
+    private final int[] changedSquares = new int[MAX_PLY * MAX_CHANGES_PER_MOVE];
+    private final int[] changedPieces = new int[MAX_PLY * MAX_CHANGES_PER_MOVE];
+    private int changesCount;
+
+    //[ply] состояние до хода
+    private final int[] changesCountHistory = new int[MAX_PLY];
+    private final long[] keyHistory = new long[MAX_PLY];
+    private final int[][] castlingRightsHistory = new int[MAX_PLY][Side.values().length];
+    private final int[][] pawnLongMoveColumnIndexesHistory = new int[MAX_PLY][Side.values().length];
+
+    //[ply] буферы для генератора ходов, создаются по мере надобности
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+
+    //[ply] биты обеих сторон (см. ATTACKED_SQUARES_FLAG)
+    private final int[] attackInfoFlags = new int[MAX_PLY + 1];
+    //[ply * 2 + side.ordinal()]
+    private final long[] attackedSquares = new long[(MAX_PLY + 1) * 2];
+    private final long[] checkers = new long[(MAX_PLY + 1) * 2];
+    private final long[] pinned = new long[(MAX_PLY + 1) * 2];
+
+    private SearchBoard() {
+    }
+
+    public static SearchBoard of(IMatrix matrix, IGame game) {
+        return new SearchBoard().load(matrix, game);
+    }
+
+    /**
+     * Доска текущего потока, загруженная из matrix/game. Предыдущее содержимое (и стек ходов) затирается,
+     * так что вызывать только в начале перебора, но не изнутри него.
+     */
+    public static SearchBoard ofCurrentThread(IMatrix matrix, IGame game) {
+        return CURRENT_THREAD_BOARD.get().load(matrix, game);
+    }
+
+    public SearchBoard load(IMatrix matrix, IGame game) {
+        Arrays.fill(pieces, EMPTY);
+        Arrays.fill(sides, EMPTY);
+        Arrays.fill(mailbox, NO_PIECE);
+        Arrays.fill(kingSquares, NO_SQUARE);
+        piecesKey = 0;
+        key = 0;
+
+        if (matrix instanceof IBitboardMatrix) {
+            IBitboardMatrix bitboardMatrix = (IBitboardMatrix) matrix;
+            for (int pieceIndex = 0; pieceIndex < PIECES_COUNT; pieceIndex++) {
+                long bitboard = bitboardMatrix.getPieces(piece(pieceIndex));
+                while (bitboard != 0) {
+                    putPiece(Long.numberOfTrailingZeros(bitboard), pieceIndex);
+                    bitboard &= bitboard - 1;
+                }
+            }
+        } else {
+            matrix.allPiecesStream()
+                    .filter(cell -> !cell.isEmpty())
+                    .forEach(cell -> putPiece(square(cell.getPoint()), cell.getPiece().ordinal()));
+        }
+
+        for (Side side : Side.values()) {
+            int rights = 0;
+            if (game.isShortCastlingAvailable(side)) {
+                rights |= SHORT_CASTLING;
+            }
+            if (game.isLongCastlingAvailable(side)) {
+                rights |= LONG_CASTLING;
+            }
+            castlingRights[side.ordinal()] = rights;
+
+            Integer columnIndex = game.getPawnLongMoveColumnIndex(side);
+            pawnLongMoveColumnIndexes[side.ordinal()] = columnIndex == null ? NO_COLUMN : columnIndex;
+        }
+
+        position = matrix.getPosition();
+        key ^= Zobrist.getStateKey(this, Side.getNextTurnSideByPosition(position));
+        ply = 0;
+        changesCount = 0;
+        attackInfoFlags[ply] = 0;
+        return this;
+    }
+
+    /**
+     * Легальные ходы side в буфер текущего ply. Буфер остается валидным, пока не откатились ниже этого ply,
+     * так что по нему можно итерироваться, делая makeMove()/unmakeMove() внутри цикла.
+     */
+    public MoveList generateMoves(Side side) {
+        MoveList moves = getMoveList();
+        MoveGenerator.generateLegalMoves(this, this, side, moves);
+        return moves;
+    }
+
+    /**
+     * Только взятия и превращения (см. MoveGenerator.generateLegalCaptures()), в тот же буфер текущего ply
+     */
+    public MoveList generateCaptures(Side side) {
+        MoveList moves = getMoveList();
+        MoveGenerator.generateLegalCaptures(this, this, side, moves);
+        return moves;
+    }
+
+    private MoveList getMoveList() {
+        MoveList moves = moveLists[ply];
+        if (moves == null) {
+            moves = new MoveList();
+            moveLists[ply] = moves;
+        }
+        return moves;
+    }
+
+    public void makeMove(Move move) {
+        makeMove(PackedMove.of(this, move));
+    }
+
+    /**
+     * Повторяет BitboardMatrix.applyMove() (а значит и CellsMatrix.Builder.executeMove()), но с записью в стек отката
+     */
+    public void makeMove(int move) {
+        Preconditions.checkState(ply < MAX_PLY, "Search is too deep: " + ply);
+
+        int squareFrom = PackedMove.from(move);
+        int squareTo = PackedMove.to(move);
+        int pieceIndexFrom = mailbox[squareFrom];
+        Preconditions.checkState(pieceIndexFrom != NO_PIECE, "Empty square: " + squareFrom);
+        Piece pieceFrom = piece(pieceIndexFrom);
+
+        changesCountHistory[ply] = changesCount;
+        keyHistory[ply] = key;
+        System.arraycopy(castlingRights, 0, castlingRightsHistory[ply], 0, castlingRights.length);
+        System.arraycopy(pawnLongMoveColumnIndexes, 0, pawnLongMoveColumnIndexesHistory[ply], 0, pawnLongMoveColumnIndexes.length);
+
+        int rowIndexFrom = rowIndex(squareFrom);
+        int columnIndexFrom = columnIndex(squareFrom);
+        int pieceIndexTo = pieceIndexFrom;
+
+        if (PackedMove.isCastling(move)) {
+            int rookColumnIndexFrom;
+            int rookColumnIndexTo;
+
+            if (columnIndex(squareTo) > columnIndexFrom) {
+                rookColumnIndexFrom = ROOK_LONG_COLUMN_INDEX;
+                rookColumnIndexTo = columnIndexFrom + 1;
+            } else {
+                rookColumnIndexFrom = ROOK_SHORT_COLUMN_INDEX;
+                rookColumnIndexTo = columnIndexFrom - 1;
+            }
+
+            int rookSquareFrom = square(rowIndexFrom, rookColumnIndexFrom);
+            int rookIndex = mailbox[rookSquareFrom];
+            changeSquare(rookSquareFrom, NO_PIECE);
+            changeSquare(square(rowIndexFrom, rookColumnIndexTo), rookIndex);
+        } else if (PackedMove.isEnPassant(move)) {
+            changeSquare(square(rowIndexFrom, columnIndex(squareTo)), NO_PIECE);
+        } else if (PackedMove.isPawnTransformation(move)) {
+            pieceIndexTo = pieceIndex(pieceFrom.getSide(), PackedMove.getPieceFromPawn(move));
+        }
+
+        changeSquare(squareFrom, NO_PIECE);
+        changeSquare(squareTo, pieceIndexTo);
+
+        Side side = pieceFrom.getSide();
+        key ^= getCastlingKey(side) ^ Zobrist.pawnLongMoveKey(getPawnLongMoveColumnIndex(side.reverse()));
+        updateGameState(pieceFrom, columnIndexFrom, PackedMove.isLongPawnMove(move));
+        key ^= getCastlingKey(side) ^ Zobrist.pawnLongMoveKey(getPawnLongMoveColumnIndex(side)) ^ Zobrist.flipSideKey();
+
+        ply++;
+        position++;
+        attackInfoFlags[ply] = 0;
+    }
+
+    /**
+     * Пропуск хода (null move pruning): фигуры стоят на месте, ход переходит к сопернику.
+     * Право на взятие на проходе у side пропадает, как после любого хода. Откатывается обычным unmakeMove().
+     */
+    public void makeNullMove(Side side) {
+        Preconditions.checkState(ply < MAX_PLY, "Search is too deep: " + ply);
+
+        changesCountHistory[ply] = changesCount;
+        keyHistory[ply] = key;
+        System.arraycopy(castlingRights, 0, castlingRightsHistory[ply], 0, castlingRights.length);
+        System.arraycopy(pawnLongMoveColumnIndexes, 0, pawnLongMoveColumnIndexesHistory[ply], 0, pawnLongMoveColumnIndexes.length);
+
+        key ^= Zobrist.pawnLongMoveKey(getPawnLongMoveColumnIndex(side.reverse()));
+        pawnLongMoveColumnIndexes[side.ordinal()] = NO_COLUMN;
+        key ^= Zobrist.pawnLongMoveKey(getPawnLongMoveColumnIndex(side)) ^ Zobrist.flipSideKey();
+
+        ply++;
+        position++;
+        attackInfoFlags[ply] = 0;
+    }
+
+    public void unmakeMove() {
+        Preconditions.checkState(ply > 0, "No moves to unmake");
+        ply--;
+        position--;
+
+        int changesFrom = changesCountHistory[ply];
+        while (changesCount > changesFrom) {
+            changesCount--;
+            int square = changedSquares[changesCount];
+            cutPiece(square);
+            putPiece(square, changedPieces[changesCount]);
+        }
+        key = keyHistory[ply];
+
+        System.arraycopy(castlingRightsHistory[ply], 0, castlingRights, 0, castlingRights.length);
+        System.arraycopy(pawnLongMoveColumnIndexesHistory[ply], 0, pawnLongMoveColumnIndexes, 0, pawnLongMoveColumnIndexes.length);
+    }
+
+    /**
+     * Копия текущего состояния доски, которую можно отдавать наружу (например в GameContext)
+     */
+    public BitboardMatrix snapshot() {
+        return new BitboardMatrix(position, pieces, sides, kingSquares, piecesKey);
+    }
+
+    @Override
+    public IMatrix executeMove(Move move) {
+        return snapshot().executeMove(move);
+    }
+
+    /**
+     * См. FakeGame.Builder.afterMove()
+     */
+    private void updateGameState(Piece pieceFrom, int columnIndexFrom, boolean isLongPawnMove) {
+        int side = pieceFrom.getSide().ordinal();
+        pawnLongMoveColumnIndexes[side] = NO_COLUMN;
+
+        switch (pieceFrom.getType()) {
+            case KING:
+                castlingRights[side] = 0;
+                break;
+            case ROOK:
+                if (columnIndexFrom == ROOK_SHORT_COLUMN_INDEX) {
+                    castlingRights[side] &= ~SHORT_CASTLING;
+                } else if (columnIndexFrom == ROOK_LONG_COLUMN_INDEX) {
+                    castlingRights[side] &= ~LONG_CASTLING;
+                }
+                break;
+            case PAWN:
+                if (isLongPawnMove) {
+                    pawnLongMoveColumnIndexes[side] = columnIndexFrom;
+                }
+                break;
+        }
+    }
+
+    private long getCastlingKey(Side side) {
+        return Zobrist.castlingKey(side, isShortCastlingAvailable(side), isLongCastlingAvailable(side));
+    }
+
+    private void changeSquare(int square, int pieceIndex) {
+        changedSquares[changesCount] = square;
+        changedPieces[changesCount] = mailbox[square];
+        changesCount++;
+
+        cutPiece(square);
+        putPiece(square, pieceIndex);
+    }
+
+    private void putPiece(int square, int pieceIndex) {
+        if (pieceIndex == NO_PIECE) {
+            return;
+        }
+
+        long bit = bit(square);
+        Piece piece = piece(pieceIndex);
+        pieces[pieceIndex] |= bit;
+        sides[piece.getSide().ordinal()] |= bit;
+        mailbox[square] = pieceIndex;
+        piecesKey ^= Zobrist.pieceKey(pieceIndex, square);
+        key ^= Zobrist.pieceKey(pieceIndex, square);
+
+        if (piece.isKing()) {
+            kingSquares[piece.getSide().ordinal()] = square;
+        }
+    }
+
+    private void cutPiece(int square) {
+        int pieceIndex = mailbox[square];
+        if (pieceIndex == NO_PIECE) {
+            return;
+        }
+
+        long mask = ~bit(square);
+        Piece piece = piece(pieceIndex);
+        pieces[pieceIndex] &= mask;
+        sides[piece.getSide().ordinal()] &= mask;
+        mailbox[square] = NO_PIECE;
+        piecesKey ^= Zobrist.pieceKey(pieceIndex, square);
+        key ^= Zobrist.pieceKey(pieceIndex, square);
+
+        if (piece.isKing() && kingSquares[piece.getSide().ordinal()] == square) {
+            kingSquares[piece.getSide().ordinal()] = NO_SQUARE;
+        }
+    }
+
+    @Override
+    public long getPieces(Piece piece) {
+        return pieces[piece.ordinal()];
+    }
+
+    @Override
+    public long getPieces(Side side, PieceType pieceType) {
+        return pieces[pieceIndex(side, pieceType)];
+    }
+
+    @Override
+    public long getPieces(Side side) {
+        return sides[side.ordinal()];
+    }
+
+    @Override
+    public long getOccupied() {
+        return sides[Side.WHITE.ordinal()] | sides[Side.BLACK.ordinal()];
+    }
+
+    @Override
+    public Piece getPiece(int square) {
+        return piece(mailbox[square]);
+    }
+
+    @Override
+    public int getKingSquare(Side side) {
+        return kingSquares[side.ordinal()];
+    }
+
+    @Override
+    public long getAttackedSquares(Side side) {
+        int flag = ATTACKED_SQUARES_FLAG << side.ordinal();
+        if ((attackInfoFlags[ply] & flag) == 0) {
+            attackedSquares[ply * 2 + side.ordinal()] = MoveGenerator.getAttackedSquares(this, side);
+            attackInfoFlags[ply] |= flag;
+        }
+        return attackedSquares[ply * 2 + side.ordinal()];
+    }
+
+    @Override
+    public long getCheckers(Side kingSide) {
+        int flag = CHECKERS_FLAG << kingSide.ordinal();
+        if ((attackInfoFlags[ply] & flag) == 0) {
+            int kingSquare = getExistingKingSquare(kingSide);
+            long kingCheckers = EMPTY;
+            //карта атак обычно уже посчитана генератором - если король не под ней, то и искать некого
+            if ((attackInfoFlags[ply] & (ATTACKED_SQUARES_FLAG << kingSide.reverse().ordinal())) == 0
+                    || contains(getAttackedSquares(kingSide.reverse()), kingSquare)) {
+                kingCheckers = MoveGenerator.getAttackers(this, kingSquare, kingSide.reverse(), getOccupied());
+            }
+            checkers[ply * 2 + kingSide.ordinal()] = kingCheckers;
+            attackInfoFlags[ply] |= flag;
+        }
+        return checkers[ply * 2 + kingSide.ordinal()];
+    }
+
+    @Override
+    public long getPinned(Side side) {
+        int flag = PINNED_FLAG << side.ordinal();
+        if ((attackInfoFlags[ply] & flag) == 0) {
+            pinned[ply * 2 + side.ordinal()] = MoveGenerator.getPinned(this, getExistingKingSquare(side), side, getOccupied());
+            attackInfoFlags[ply] |= flag;
+        }
+        return pinned[ply * 2 + side.ordinal()];
+    }
+
+    @Override
+    public Integer getPawnLongMoveColumnIndex(Side side) {
+        int columnIndex = pawnLongMoveColumnIndexes[side.ordinal()];
+        return columnIndex == NO_COLUMN ? null : columnIndex;
+    }
+
+    @Override
+    public boolean isLongCastlingAvailable(Side side) {
+        return (castlingRights[side.ordinal()] & LONG_CASTLING) != 0;
+    }
+
+    @Override
+    public boolean isShortCastlingAvailable(Side side) {
+        return (castlingRights[side.ordinal()] & SHORT_CASTLING) != 0;
+    }
+}
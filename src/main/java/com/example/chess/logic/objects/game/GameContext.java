@@ -4,17 +4,24 @@ import com.example.chess.dto.PointDTO;
 import com.example.chess.enums.Piece;
 import com.example.chess.enums.Side;
 import com.example.chess.exceptions.CheckmateException;
-import com.example.chess.logic.MoveHelper;
-import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.bitboard.MoveList;
+import com.example.chess.logic.bitboard.PackedMove;
+import com.example.chess.logic.bitboard.Zobrist;
+import com.example.chess.logic.objects.BitboardMatrix;
+import com.example.chess.logic.objects.IMatrix;
+import com.example.chess.logic.objects.SearchBoard;
 import com.example.chess.logic.objects.move.ExtendedMove;
+import com.example.chess.service.impl.bot.SearchStats;
+import com.example.chess.service.impl.bot.TranspositionTable;
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.log4j.Log4j2;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BinaryOperator;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -25,7 +32,6 @@ import static com.example.chess.service.impl.bot.AbstractBotService.MAX_DEEP;
 @Log4j2
 @Getter
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@RequiredArgsConstructor(access = AccessLevel.PROTECTED)
 /**
  * Основные концепции:
  * - незавимимо кто кому принадлежит lastMove - рейтинг должен считаться так словно это ход бота,
@@ -39,40 +45,171 @@ public class GameContext {
 
     final RootGameContext root;
     final GameContext parent;
-    final FakeGame game;        //game state after lastMove
 
-    final CellsMatrix matrix;   //matrix state after lastMove
+    /*
+     * Состояние после lastMove. У дочерних контекстов создается лениво (из parent) при первом обращении:
+     * fill() перебирает дерево на SearchBoard и доски для узлов, которые никто не спросит, не строит вовсе.
+     */
+    volatile FakeGame game;
+    volatile IMatrix matrix;
     final ExtendedMove lastMove;
 
     //key = pointTo
     Map<PointDTO, List<GameContext>> children;  //возможно стоит поменять на array[][][]
     Set<PointDTO> deepExchangePoints;
 
+    /*
+     * Оценка поддерева, взятая из таблицы транспозиций (см. RootGameContext.transpositionTable).
+     * Если не null - узел раскрыт только на один уровень (для рейтинга самого lastMove), а глубже не считался.
+     */
+    Integer cachedChildContextTotal;
+
     @Setter boolean isCheckmate;
     @Setter boolean isDeepExchangeAlreadyCalculated = false;
 
-    public void fill(int maxDeep) {
-        fill(maxDeep, move -> true);
+    protected GameContext(RootGameContext root, GameContext parent, FakeGame game, IMatrix matrix, ExtendedMove lastMove) {
+        this.root = root;
+        this.parent = parent;
+        this.game = game;
+        this.matrix = matrix;
+        this.lastMove = lastMove;
     }
 
-    public void fill(int deep, Predicate<ExtendedMove> movesFilter) {
-        MoveHelper.valueOf(this)
-                .getStandardMovesStream(nextTurnSide())
-                .filter(movesFilter)
-                .sorted(Comparator.comparing(ExtendedMove::getValueFrom))
-                .map(this::executeMove)
-                .filter(childContext -> deep > 1)
-                .forEach(childContext -> childContext.fill(deep - 1));
+    private GameContext(RootGameContext root, GameContext parent, ExtendedMove lastMove) {
+        this(root, parent, null, null, lastMove);
     }
 
-    private GameContext executeMove(ExtendedMove nextMove) {
-        Piece pieceFrom = matrix.getCell(nextMove.getPointFrom()).getPiece();
+    public FakeGame getGame() {
+        FakeGame game = this.game;
+        if (game == null) {
+            //гонка тут безобидна: оба потока посчитают одинаковый immutable объект
+            Piece pieceFrom = lastMove.getFrom().getPiece();
+            game = parent.getGame().executeMove(lastMove, pieceFrom);
+            this.game = game;
+        }
+        return game;
+    }
+
+    public IMatrix getMatrix() {
+        IMatrix matrix = this.matrix;
+        if (matrix == null) {
+            matrix = parent.getMatrix().executeMove(lastMove);
+            this.matrix = matrix;
+        }
+        return matrix;
+    }
+
+    /**
+     * @param cancelSignal ход отменен (см. BotMoveHandle): построение дерева сворачивается с CancellationException
+     */
+    public void fill(int maxDeep, AtomicBoolean cancelSignal) {
+        fill(maxDeep, move -> true, cancelSignal);
+    }
 
-        FakeGame nextGame = game.executeMove(nextMove, pieceFrom);
-        CellsMatrix nextMatrix = matrix.executeMove(nextMove);
+    public void fill(int deep, Predicate<ExtendedMove> movesFilter, AtomicBoolean cancelSignal) {
+        SearchBoard board = SearchBoard.ofCurrentThread(getMatrix(), getGame());
+        fill(board, deep, movesFilter, cancelSignal);
+    }
 
-        RootGameContext rootContext = isRoot() ? (RootGameContext) this : root;
-        GameContext childContext = new GameContext(rootContext, this, nextGame, nextMatrix, nextMove);
+    /**
+     * board - это состояние ЭТОГО контекста. Спускаемся в детей через makeMove() и обязательно откатываемся обратно.
+     * <p>
+     * Если дети уже есть (поддерево перенесено из прошлого дерева, см. RootGameContext.reuseTree()) - ходы заново
+     * не генерируются, дерево только достраивается в глубину.
+     * <p>
+     * Отмена проверяется на каждом узле. Доска после CancellationException остается посреди ветки - это не страшно:
+     * SearchBoard.ofCurrentThread() каждый раз загружает позицию заново.
+     */
+    private void fill(SearchBoard board, int deep, Predicate<ExtendedMove> movesFilter, AtomicBoolean cancelSignal) {
+        if (cancelSignal.get()) {
+            throw new CancellationException("Tree filling cancelled: position = " + getPosition());
+        }
+        if (!hasChildren()) {
+            MoveList moves = board.generateMoves(nextTurnSide());
+            SearchStats stats = getRootContext().getStats();
+            stats.onMoveGeneration();
+
+            //ExtendedMove создаются только потому, что они хранятся в узлах дерева.
+            //Порядок не важен: отсечений тут нет, а дети все равно лежат в HashMap
+            moves.stream()
+                    .mapToObj(PackedMove::toExtendedMove)
+                    .filter(movesFilter)
+                    .forEach(move -> {
+                        executeMove(move);
+                        stats.onNode();
+                    });
+        }
+
+        if (deep > 1 && hasChildren()) {
+            childrenStream().forEach(childContext -> {
+                board.makeMove(childContext.getLastMove());
+                //если поддерево уже посчитано (транспозиция) - хватит одного уровня, он нужен для рейтинга самого lastMove
+                int childDeep = childContext.probeTranspositionTable(board.getKey(), deep - 1) ? 1 : deep - 1;
+                childContext.fill(board, childDeep, move -> true, cancelSignal);
+                board.unmakeMove();
+            });
+        }
+    }
+
+    /**
+     * Переносит сюда детей source (это должна быть та же позиция): узлы создаются заново, т.к. рейтинги и оценки
+     * из таблицы зависят от глубины узла, а вот сгенерированные ходы и уже построенные доски берутся готовые.
+     */
+    void adoptChildren(GameContext source) {
+        if (!source.hasChildren()) {
+            return;
+        }
+
+        RootGameContext rootContext = getRootContext();
+        source.childrenStream().forEach(sourceChild -> {
+            GameContext childContext = new GameContext(rootContext, this, sourceChild.game, sourceChild.matrix, sourceChild.getLastMove().copyWithoutRating());
+            addChild(childContext);
+            childContext.adoptChildren(sourceChild);
+        });
+    }
+
+    private boolean probeTranspositionTable(long key, int deep) {
+        RootGameContext rootContext = getRootContext();
+        TranspositionTable table = rootContext.getTranspositionTable();
+        if (table == null) {
+            return false;
+        }
+
+        long entry = table.probe(key ^ Zobrist.botSideKey(rootContext.getBotSide()));
+        rootContext.getStats().onTtProbe(entry != TranspositionTable.NO_ENTRY);
+        if (!TranspositionTable.isExact(entry, deep)) {
+            return false;
+        }
+
+        cachedChildContextTotal = TranspositionTable.getScore(entry);
+        return true;
+    }
+
+    /**
+     * Сохраняет в таблицу оценки всех честно посчитанных поддеревьев (кроме взятых из таблицы и листьев).
+     * Вызывать после подсчета рейтингов, иначе тоталы еще пустые.
+     */
+    public void saveToTranspositionTable(TranspositionTable table) {
+        int deep = getDeep();
+        if (!hasChildren() || cachedChildContextTotal != null || deep >= MAX_DEEP) {
+            return;
+        }
+
+        GameContext bestChild = getMostPossibleChildContext();
+        int bestMove = PackedMove.of(BitboardMatrix.of(getMatrix()), bestChild.getLastMove());
+        long key = getKey() ^ Zobrist.botSideKey(getRootContext().getBotSide());
+
+        table.store(key, MAX_DEEP - deep, bestChild.getContextTotal(), TranspositionTable.EXACT, bestMove);
+        childrenStream().forEach(childContext -> childContext.saveToTranspositionTable(table));
+    }
+
+    private RootGameContext getRootContext() {
+        return isRoot() ? (RootGameContext) this : root;
+    }
+
+    private GameContext executeMove(ExtendedMove nextMove) {
+        RootGameContext rootContext = getRootContext();
+        GameContext childContext = new GameContext(rootContext, this, nextMove);
 
         addChild(childContext);
         return childContext;
@@ -89,9 +226,20 @@ public class GameContext {
     }
 
     public int getPosition() {
+        IMatrix matrix = this.matrix;
+        if (matrix == null) {
+            return parent.getPosition() + 1;
+        }
         return matrix.getPosition();
     }
 
+    /**
+     * Zobrist-ключ позиции после lastMove (см. Zobrist.getKey())
+     */
+    public long getKey() {
+        return Zobrist.getKey(getMatrix(), getGame(), nextTurnSide());
+    }
+
     public Side nextTurnSide() {
         return lastMoveSide().reverse();
     }
@@ -184,6 +332,9 @@ public class GameContext {
      * который в свою очередь должен учитывать ответ бота, который тоже в свою очередь не дурак: children.find(maxB)
      */
     public int getContextTotal() {
+        if (cachedChildContextTotal != null) {
+            return getMoveTotal() + cachedChildContextTotal;
+        }
         if (hasChildren() && getDeep() <= MAX_DEEP) {
             return getMoveTotal() + getMostPossibleChildContextTotal();
         }
@@ -202,6 +353,12 @@ public class GameContext {
         }
     }
 
+    private GameContext getMostPossibleChildContext() {
+        Comparator<GameContext> comparator = Comparator.comparingInt(GameContext::getContextTotal);
+        return (botLast() ? childrenStream().min(comparator) : childrenStream().max(comparator))
+                .orElseThrow(() -> new CheckmateException(this));
+    }
+
     private int getMaxChildContextTotal() {
         return childrenStream().mapToInt(GameContext::getContextTotal).max().orElseThrow(() -> new CheckmateException(this));
     }
@@ -210,43 +367,40 @@ public class GameContext {
         return childrenStream().mapToInt(GameContext::getContextTotal).min().orElseThrow(() -> new CheckmateException(this));
     }
 
-    public void print(int tabsCount, String prefix) {
-        printMove(tabsCount, prefix);
-        System.out.println("resultMove.context.total = " + getContextTotal());
-
-        if (tabsCount == 0) {
-//            getLastMove().printRating(tabsCount + 1);
-        }
-
-        System.out.println("--------------------------------");
-        printMinMax(tabsCount + 1);
+    /**
+     * Ход с рейтингами и ветки max/min под ним - для отладочного лога
+     */
+    public String toDebugString(int tabsCount, String prefix) {
+        StringBuilder out = new StringBuilder();
+        appendMove(out, tabsCount, prefix, "");
+        out.append("resultMove.context.total = ").append(getContextTotal()).append("\n");
+        out.append("--------------------------------\n");
+        appendMinMax(out, tabsCount + 1);
+        return out.toString();
     }
 
-    private void printMinMax(int tabsCount) {
+    private void appendMinMax(StringBuilder out, int tabsCount) {
         if (hasChildren()) {
             childrenStream()
                     .reduce((BinaryOperator.maxBy(Comparator.comparing(GameContext::getContextTotal))))
                     .ifPresent(maxContext -> {
-                        maxContext.printMove(tabsCount, maxContext.getPrefix("max"), maxContext.getContextPostfix());
-                        maxContext.printMinMax(tabsCount + 1);
+                        maxContext.appendMove(out, tabsCount, maxContext.getPrefix("max"), maxContext.getContextPostfix());
+                        maxContext.appendMinMax(out, tabsCount + 1);
                     });
 
             childrenStream()
                     .reduce((BinaryOperator.minBy(Comparator.comparing(GameContext::getContextTotal))))
                     .ifPresent(minContext -> {
-                        minContext.printMove(tabsCount, minContext.getPrefix("min"), minContext.getContextPostfix());
-                        minContext.printMinMax(tabsCount + 1);
+                        minContext.appendMove(out, tabsCount, minContext.getPrefix("min"), minContext.getContextPostfix());
+                        minContext.appendMinMax(out, tabsCount + 1);
                     });
         }
     }
 
-    private void printMove(int tabsCount, String prefix) {
-        printMove(tabsCount, prefix, "");
-    }
-
-    private void printMove(int tabsCount, String prefix, String postfix) {
-        System.out.println(tabs(tabsCount) + prefix + "[" + lastMove + "][" + getDeep() + "].moveTotal = " + lastMove.getTotal() + ", ctxTotal = " + getContextTotal() + postfix);
-        lastMove.printRating(tabsCount + 1);
+    private void appendMove(StringBuilder out, int tabsCount, String prefix, String postfix) {
+        out.append(tabs(tabsCount)).append(prefix).append("[").append(lastMove).append("][").append(getDeep()).append("].moveTotal = ")
+                .append(lastMove.getTotal()).append(", ctxTotal = ").append(getContextTotal()).append(postfix).append("\n");
+        lastMove.appendRating(out, tabsCount + 1);
     }
 
     private String getPrefix(String prefix) {
@@ -2,22 +2,77 @@ package com.example.chess.logic.objects.game;
 
 import com.example.chess.entity.Game;
 import com.example.chess.enums.Side;
-import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.BitboardMatrix;
+import com.example.chess.logic.objects.IMatrix;
 import com.example.chess.logic.objects.move.ExtendedMove;
+import com.example.chess.service.impl.bot.SearchStats;
+import com.example.chess.service.impl.bot.TranspositionTable;
 import lombok.Getter;
 
+import javax.annotation.Nullable;
+
 @Getter
 public class RootGameContext extends GameContext {
 
+    @Nullable
+    private final Long gameId;
     private final Side botSide;
+    @Nullable
+    private final TranspositionTable transpositionTable;
+    //статистика построения дерева (fill() идет в одном потоке)
+    private final SearchStats stats = new SearchStats();
 
-    private RootGameContext(Game game, CellsMatrix matrix, ExtendedMove lastMove, Side botSide) {
-        super(null, null, FakeGame.ofGame(game), matrix, lastMove);
+    private RootGameContext(Long gameId, IGame game, IMatrix matrix, ExtendedMove lastMove, Side botSide, TranspositionTable transpositionTable) {
+        //дерево ходов бота строится на битбордах: копирование доски на каждом ходе обходится на порядок дешевле
+        super(null, null, FakeGame.ofGame(game), BitboardMatrix.of(matrix), lastMove);
+        this.gameId = gameId;
         this.botSide = botSide;
+        this.transpositionTable = transpositionTable;
+    }
+
+    public static RootGameContext of(Game game, IMatrix matrix, ExtendedMove lastMove, Side botSide) {
+        return of(game, matrix, lastMove, botSide, null);
+    }
+
+    /**
+     * @param transpositionTable если не null - fill() не раскрывает поддеревья позиций, оценка которых уже есть в таблице
+     */
+    public static RootGameContext of(Game game, IMatrix matrix, ExtendedMove lastMove, Side botSide, @Nullable TranspositionTable transpositionTable) {
+        return new RootGameContext(game.getId(), game, matrix, lastMove, botSide, transpositionTable);
     }
 
-    public static RootGameContext of(Game game, CellsMatrix matrix, ExtendedMove lastMove, Side botSide) {
-        return new RootGameContext(game, matrix, lastMove, botSide);
+    /**
+     * Отдельное дерево из поддерева хода бота (botMoveContext - ребенок корня): его можно хранить до следующего хода
+     * (см. reuseTree()), не удерживая в памяти остальное дерево
+     */
+    public static RootGameContext ofBotMove(RootGameContext rootContext, GameContext botMoveContext) {
+        RootGameContext subtree = new RootGameContext(rootContext.getGameId(), botMoveContext.getGame(), botMoveContext.getMatrix(),
+                botMoveContext.getLastMove(), rootContext.getBotSide(), rootContext.getTranspositionTable());
+
+        subtree.adoptChildren(botMoveContext);
+        return subtree;
+    }
+
+    /**
+     * Берет из previousTree (см. ofBotMove()) поддерево ответа игрока, который привел в эту позицию.
+     * Вызывать до fill(): fill() его только достроит.
+     *
+     * @return false - такого ответа в previousTree нет (или это уже другая позиция), дерево строится с нуля
+     */
+    public boolean reuseTree(RootGameContext previousTree) {
+        if (hasChildren() || !previousTree.hasChildren() || getLastMove() == null) {
+            return false;
+        }
+
+        long key = getKey();
+        return previousTree.childrenStream(getLastMove().getPointTo())
+                .filter(playerMoveContext -> playerMoveContext.getKey() == key)
+                .findFirst()
+                .map(playerMoveContext -> {
+                    adoptChildren(playerMoveContext);
+                    return true;
+                })
+                .orElse(false);
     }
 
     @Override
@@ -27,13 +27,19 @@ public class ExtendedMove implements Move {
 
     final CellDTO from;
     final CellDTO to;
+    final PieceType pieceFromPawn;      //null == QUEEN (если это вообще превращение пешки)
 
     final Map<RatingParam, Rating> ratingMap = new EnumMap<>(RatingParam.class);
     int total = 0;
 
     public ExtendedMove(CellDTO from, CellDTO to) {
+        this(from, to, null);
+    }
+
+    public ExtendedMove(CellDTO from, CellDTO to, PieceType pieceFromPawn) {
         this.from = from;
         this.to = to;
+        this.pieceFromPawn = pieceFromPawn;
     }
 
     @Override
@@ -49,7 +55,7 @@ public class ExtendedMove implements Move {
     @Override
     public PieceType getPieceFromPawn() {
         if (isPawnTransformation()) {
-            return PieceType.QUEEN;
+            return pieceFromPawn != null ? pieceFromPawn : PieceType.QUEEN;
         }
         throw new UnsupportedOperationException();
     }
@@ -78,6 +84,13 @@ public class ExtendedMove implements Move {
         return to.getColumnIndex();
     }
 
+    /**
+     * Тот же ход, но без рейтингов: рейтинг зависит от места хода в дереве (см. GameContext.adoptChildren())
+     */
+    public ExtendedMove copyWithoutRating() {
+        return new ExtendedMove(from, to, pieceFromPawn);
+    }
+
     public PieceType getPieceFrom() {
         return from.getPieceType();
     }
@@ -145,9 +158,9 @@ public class ExtendedMove implements Move {
         return CommonUtils.moveToString(this);
     }
 
-    public void printRating(int tabsCount) {
+    public void appendRating(StringBuilder out, int tabsCount) {
         for (Rating rating : ratingMap.values()) {
-            rating.print(tabsCount + 1);
+            out.append(rating.toString(tabsCount + 1)).append("\n");
         }
     }
 }
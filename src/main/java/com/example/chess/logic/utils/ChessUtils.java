@@ -4,7 +4,7 @@ import com.example.chess.dto.CellDTO;
 import com.example.chess.enums.Piece;
 import com.example.chess.enums.PieceType;
 import com.example.chess.enums.Side;
-import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.IMatrix;
 import com.example.chess.logic.objects.move.Move;
 import lombok.experimental.UtilityClass;
 
@@ -67,11 +67,11 @@ public class ChessUtils {
         return pieceType == PieceType.PAWN && (move.getRowIndexTo() == 0 || move.getRowIndexTo() == 7);
     }
 
-    public static boolean isEnPassant(CellsMatrix matrix, Move move, PieceType pieceType) {
+    public static boolean isEnPassant(IMatrix matrix, Move move, PieceType pieceType) {
         if (isPawnAttacks(move, pieceType)) {
             CellDTO cellTo = matrix.getCell(move.getRowIndexTo(), move.getColumnIndexTo());
-            if (cellTo == null) {
-                return matrix.getCell(move.getRowIndexFrom(), move.getColumnIndexTo()) != null;
+            if (cellTo.isEmpty()) {
+                return !matrix.getCell(move.getRowIndexFrom(), move.getColumnIndexTo()).isEmpty();
             }
         }
         return false;
@@ -102,7 +102,7 @@ public class ChessUtils {
         return isPawnTransformation(move, pieceFrom.getType());
     }
 
-    public static boolean isEnPassant(CellsMatrix matrix, Move move, Piece pieceFrom) {
+    public static boolean isEnPassant(IMatrix matrix, Move move, Piece pieceFrom) {
         return isEnPassant(matrix, move, pieceFrom.getType());
     }
 }
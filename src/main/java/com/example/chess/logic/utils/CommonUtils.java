@@ -3,6 +3,7 @@ package com.example.chess.logic.utils;
 import com.example.chess.dto.CellDTO;
 import com.example.chess.dto.PointDTO;
 import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
 import com.example.chess.logic.objects.move.ExtendedMove;
 import lombok.experimental.UtilityClass;
 import lombok.extern.log4j.Log4j2;
@@ -102,10 +103,27 @@ public class CommonUtils {
             result = result.replace("---", "-x-");
             result += "(" + getPieceName(to.getPieceType(), true) + ")";
         }
+        if (move.isPawnTransformation()) {
+            result += "=" + getPieceName(move.getPieceFromPawn(), true);
+        }
 
         return result;
     }
 
+    public static String cellToString(CellDTO cell) {
+        return cell.getPoint() + ": " + getPieceName(cell.getPieceType(), true) + sideToString(cell.getSide());
+    }
+
+    private static String sideToString(Side side) {
+        if (side == null) {
+            return "( )";
+        } else if (side == Side.WHITE) {
+            return "(W)";
+        } else {
+            return "(B)";
+        }
+    }
+
     public static String getPieceName(PieceType pieceType, boolean printPawnName) {
         if (pieceType == null) {
             return " ";
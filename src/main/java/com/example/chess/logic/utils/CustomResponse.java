@@ -1,5 +1,6 @@
 package com.example.chess.logic.utils;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -9,10 +10,23 @@ public class CustomResponse extends ResponseEntity<String> {
 		super(body, status);
 	}
 
+	private CustomResponse(String body, HttpHeaders headers, HttpStatus status) {
+		super(body, headers, status);
+	}
+
 	public static CustomResponse internalServerError(String body) {
 		return new CustomResponse(body, HttpStatus.INTERNAL_SERVER_ERROR);
 	}
 
+	/**
+	 * 503 с заголовком Retry-After: сервер перегружен, запрос можно повторить через retryAfterSeconds
+	 */
+	public static CustomResponse serviceUnavailable(String body, int retryAfterSeconds) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+		return new CustomResponse(body, headers, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
 	/**
 	 * fix the following error => XML Parsing Error: no root element found
 	 */
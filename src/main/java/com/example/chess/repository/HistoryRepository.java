@@ -11,5 +11,7 @@ public interface HistoryRepository extends CrudRepository<History, Long> {
 
 	List<History> findByGameIdAndPositionLessThanEqualOrderByPositionAsc(long gameId, int position);
 
+	List<History> findByGameIdAndPositionBetweenOrderByPositionAsc(long gameId, int positionFrom, int positionTo);
+
 	History findByGameIdAndPosition(long gameId, int position);
 }
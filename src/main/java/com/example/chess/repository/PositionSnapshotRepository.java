@@ -0,0 +1,27 @@
+package com.example.chess.repository;
+
+import com.example.chess.entity.PositionSnapshot;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface PositionSnapshotRepository extends CrudRepository<PositionSnapshot, Long> {
+
+	/**
+	 * Ближайший снапшот не позже position (null - если нет ни одного)
+	 */
+	PositionSnapshot findFirstByGameIdAndPositionLessThanEqualOrderByPositionDesc(long gameId, int position);
+
+	/**
+	 * Удаляет снапшоты начиная с position (откат и сброс партии, перезапись снапшота).
+	 * Сразу запросом, а не через remove(): иначе hibernate выполнил бы delete уже после insert нового снапшота на той же позиции
+	 */
+	@Modifying
+	@Transactional
+	@Query("delete from PositionSnapshot s where s.gameId = :gameId and s.position >= :position")
+	void deleteFromPosition(@Param("gameId") long gameId, @Param("position") int position);
+}
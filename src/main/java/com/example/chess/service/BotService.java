@@ -1,11 +1,34 @@
 package com.example.chess.service;
 
+import com.example.chess.dto.ArrangementDTO;
+import com.example.chess.dto.MoveDTO;
 import com.example.chess.entity.Game;
+import com.example.chess.exceptions.BotBusyException;
+import com.example.chess.exceptions.GameNotFoundException;
 import com.example.chess.logic.objects.move.ExtendedMove;
 
 import javax.annotation.Nullable;
 
 public interface BotService {
 
-    void applyBotMove(Game game, @Nullable ExtendedMove move);
+    /**
+     * Ставит ход бота в очередь (считается и применяется асинхронно)
+     *
+     * @throws BotBusyException очередь ходов бота заполнена - ход не будет сделан, запрос нужно повторить
+     */
+    void applyBotMove(Game game, @Nullable ExtendedMove move) throws BotBusyException;
+
+    /**
+     * Применяет ход игрока и ставит в очередь ответ бота. Место в очереди занимается до хода игрока,
+     * так что ход игрока либо сохраняется вместе с ответом бота, либо не сохраняется вовсе
+     *
+     * @throws BotBusyException очередь ходов бота заполнена - ход игрока не применен, запрос можно просто повторить
+     */
+    ArrangementDTO applyPlayerMove(Game game, MoveDTO move) throws GameNotFoundException, BotBusyException;
+
+    /**
+     * Отменяет ход бота, который еще считается (или ждет в очереди). Вызывать перед тем, как менять партию в обход ходов
+     * (откат, сброс), иначе бот применит ход для позиции, которой уже нет
+     */
+    void cancelBotMove(long gameId);
 }
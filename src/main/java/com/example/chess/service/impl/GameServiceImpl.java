@@ -5,6 +5,7 @@ import com.example.chess.dto.MoveDTO;
 import com.example.chess.dto.PointDTO;
 import com.example.chess.entity.Game;
 import com.example.chess.entity.History;
+import com.example.chess.entity.PositionSnapshot;
 import com.example.chess.enums.Piece;
 import com.example.chess.enums.Side;
 import com.example.chess.exceptions.GameNotFoundException;
@@ -13,7 +14,10 @@ import com.example.chess.logic.objects.CellsMatrix;
 import com.example.chess.logic.utils.ChessUtils;
 import com.example.chess.repository.GameRepository;
 import com.example.chess.repository.HistoryRepository;
+import com.example.chess.repository.PositionSnapshotRepository;
 import com.example.chess.service.GameService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,13 +32,39 @@ import java.util.Set;
 @Service
 public class GameServiceImpl implements GameService {
 
+    /**
+     * Раз в сколько ходов сохраняется снапшот позиции (см. PositionSnapshot): createCellsMatrixByGame() проигрывает
+     * не больше SNAPSHOT_INTERVAL - 1 последних ходов, сколько бы партия ни длилась
+     */
+    public static final int SNAPSHOT_INTERVAL = 16;
+
     private final GameRepository gameRepository;
     private final HistoryRepository historyRepository;
+    private final PositionSnapshotRepository snapshotRepository;
+
+    //latency (в том числе перцентили, см. publishPercentileHistogram()) - на /actuator/prometheus
+    private final MeterRegistry meterRegistry;
+    private final Timer applyMoveTimer;
+    private final Timer availableMovesTimer;
+    private final Timer createMatrixTimer;
 
     @Autowired
-    public GameServiceImpl(GameRepository gameRepository, HistoryRepository historyRepository) {
+    public GameServiceImpl(GameRepository gameRepository, HistoryRepository historyRepository,
+                           PositionSnapshotRepository snapshotRepository, MeterRegistry meterRegistry) {
         this.gameRepository = gameRepository;
         this.historyRepository = historyRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.meterRegistry = meterRegistry;
+        this.applyMoveTimer = createTimer("chess.game.apply.move", "applyMove(): move of the player or the bot");
+        this.availableMovesTimer = createTimer("chess.game.available.moves", "getAvailableMoves(): highlighting of the selected piece moves");
+        this.createMatrixTimer = createTimer("chess.game.matrix.create", "createCellsMatrixByGame(): position replayed from the history");
+    }
+
+    private Timer createTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     @Override
@@ -45,50 +75,58 @@ public class GameServiceImpl implements GameService {
     @Override
     @Transactional
     public Pair<CellsMatrix, ArrangementDTO> applyMove(Game game, MoveDTO move) {
-        CellsMatrix actualMatrix = createCellsMatrixByGame(game, game.getPosition());
-
-        Piece pieceFrom = actualMatrix.getCell(move.getFrom()).getPiece();
-        Side sideFrom = pieceFrom.getSide();
-
-        game.setPawnLongMoveColumnIndex(sideFrom, null);
-        game.setUnderCheckSide(null);
-
-        switch (pieceFrom.getType()) {
-            case KING:
-                game.disableCasting(sideFrom);
-                break;
-            case ROOK:
-                int rookColumnIndex = move.getFrom().getColumnIndex();
-                game.disableCasting(sideFrom, rookColumnIndex);
-                break;
-            case PAWN:
-                if (ChessUtils.isLongPawnMove(move, pieceFrom)) {
-                    //it needs for handling of the en-passant
-                    game.setPawnLongMoveColumnIndex(sideFrom, move.getFrom().getColumnIndex());
-                }
-                break;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            CellsMatrix actualMatrix = createCellsMatrixByGame(game, game.getPosition());
+
+            Piece pieceFrom = actualMatrix.getCell(move.getFrom()).getPiece();
+            Side sideFrom = pieceFrom.getSide();
+
+            game.setPawnLongMoveColumnIndex(sideFrom, null);
+            game.setUnderCheckSide(null);
+
+            switch (pieceFrom.getType()) {
+                case KING:
+                    game.disableCasting(sideFrom);
+                    break;
+                case ROOK:
+                    int rookColumnIndex = move.getFrom().getColumnIndex();
+                    game.disableCasting(sideFrom, rookColumnIndex);
+                    break;
+                case PAWN:
+                    if (ChessUtils.isLongPawnMove(move, pieceFrom)) {
+                        //it needs for handling of the en-passant
+                        game.setPawnLongMoveColumnIndex(sideFrom, move.getFrom().getColumnIndex());
+                    }
+                    break;
+            }
+
+            Side enemySide = sideFrom.reverse();
+            CellsMatrix nextMatrix = actualMatrix.executeMove(move);
+
+            if (MoveHelper.valueOf(game, nextMatrix).isKingUnderAttack(enemySide)) {
+                /*
+                    Если данный ход объявил шах вражескому королю, то нужно подсветить вражеского короля на доске.
+                    А еще этот параметр (game.underCheckSide) используется при вычислении доступных ходов,
+                    т.к. если король под атакой - то далеко не каждой фигурой можно будет ходить.
+                 */
+                game.setUnderCheckSide(enemySide);
+            }
+
+            game.setPosition(nextMatrix.getPosition());
+            game.getSideFeatures(sideFrom).setLastVisitDate(LocalDateTime.now());
+
+            historyRepository.save(move.toHistory(game.getId(), nextMatrix.getPosition(), pieceFrom));
+            if (nextMatrix.getPosition() % SNAPSHOT_INTERVAL == 0) {
+                saveSnapshot(game, nextMatrix);
+            }
+            gameRepository.save(game);
+
+            ArrangementDTO arrangement = nextMatrix.generateArrangement(game.getUnderCheckSide());
+            return Pair.of(actualMatrix, arrangement);
+        } finally {
+            sample.stop(applyMoveTimer);
         }
-
-        Side enemySide = sideFrom.reverse();
-        CellsMatrix nextMatrix = actualMatrix.executeMove(move);
-
-        if (MoveHelper.valueOf(game, nextMatrix).isKingUnderAttack(enemySide)) {
-            /*
-                Если данный ход объявил шах вражескому королю, то нужно подсветить вражеского короля на доске.
-                А еще этот параметр (game.underCheckSide) используется при вычислении доступных ходов,
-                т.к. если король под атакой - то далеко не каждой фигурой можно будет ходить.
-             */
-            game.setUnderCheckSide(enemySide);
-        }
-
-        game.setPosition(nextMatrix.getPosition());
-        game.getSideFeatures(sideFrom).setLastVisitDate(LocalDateTime.now());
-
-        historyRepository.save(move.toHistory(game.getId(), nextMatrix.getPosition(), pieceFrom));
-        gameRepository.save(game);
-
-        ArrangementDTO arrangement = nextMatrix.generateArrangement(game.getUnderCheckSide());
-        return Pair.of(actualMatrix, arrangement);
     }
 
     @Override
@@ -98,15 +136,36 @@ public class GameServiceImpl implements GameService {
 
     @Override
     public Set<PointDTO> getAvailableMoves(long gameId, PointDTO point) throws GameNotFoundException {
-        Game game = findAndCheckGame(gameId);
-        CellsMatrix matrix = createCellsMatrixByGame(game, game.getPosition());
-        return MoveHelper.valueOf(game, matrix).getFilteredAvailablePoints(point);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Game game = findAndCheckGame(gameId);
+            CellsMatrix matrix = createCellsMatrixByGame(game, game.getPosition());
+            return MoveHelper.valueOf(game, matrix).getFilteredAvailablePoints(point);
+        } finally {
+            sample.stop(availableMovesTimer);
+        }
     }
 
     @Override
     public CellsMatrix createCellsMatrixByGame(Game game, int position) {
-        List<History> historyList = findHistoryByGameIdAndPosition(game, position);
-        return CellsMatrix.ofHistory(position, historyList);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            PositionSnapshot snapshot = snapshotRepository.findFirstByGameIdAndPositionLessThanEqualOrderByPositionDesc(game.getId(), position);
+            if (snapshot != null) {
+                List<History> tail = historyRepository.findByGameIdAndPositionBetweenOrderByPositionAsc(game.getId(), snapshot.getPosition() + 1, position);
+                if (snapshot.getPosition() + tail.size() == position) {
+                    return CellsMatrix.ofSnapshot(position, snapshot, tail);
+                }
+                //история правилась в обход сервиса (скрипты из db/backup) - снапшоту верить нельзя
+                log.warn("Snapshot " + snapshot.getPosition() + " of game " + game.getId() + " doesn't match history: "
+                        + tail.size() + " moves till position " + position);
+            }
+
+            List<History> historyList = findHistoryByGameIdAndPosition(game, position);
+            return CellsMatrix.ofHistory(position, historyList);
+        } finally {
+            sample.stop(createMatrixTimer);
+        }
     }
 
     @Override
@@ -116,6 +175,7 @@ public class GameServiceImpl implements GameService {
         log.info("Canceled move: ");
         log.info(lastMove);
         historyRepository.delete(lastMove);
+        snapshotRepository.deleteFromPosition(game.getId(), lastMove.getPosition());
 
         game.setPosition(game.getPosition() - 1);
         gameRepository.save(game);
@@ -129,6 +189,12 @@ public class GameServiceImpl implements GameService {
         return historyRepository.findByGameIdAndPosition(game.getId(), game.getPosition());
     }
 
+    private void saveSnapshot(Game game, CellsMatrix matrix) {
+        //снапшот на этой позиции мог остаться от партии до отката - перезаписываем
+        snapshotRepository.deleteFromPosition(game.getId(), matrix.getPosition());
+        snapshotRepository.save(PositionSnapshot.of(game.getId(), matrix));
+    }
+
     private List<History> findHistoryByGameIdAndPosition(Game game, int position) {
         return historyRepository.findByGameIdAndPositionLessThanEqualOrderByPositionAsc(game.getId(), position);
     }
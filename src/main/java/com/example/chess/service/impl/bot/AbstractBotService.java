@@ -1,30 +1,31 @@
 package com.example.chess.service.impl.bot;
 
 import com.example.chess.aspects.Profile;
+import com.example.chess.dto.ArrangementDTO;
 import com.example.chess.dto.MoveDTO;
 import com.example.chess.entity.Game;
 import com.example.chess.enums.PieceType;
 import com.example.chess.enums.Side;
-import com.example.chess.exceptions.CheckmateException;
+import com.example.chess.exceptions.BotBusyException;
 import com.example.chess.exceptions.GameNotFoundException;
-import com.example.chess.logic.debug.Debug;
 import com.example.chess.logic.objects.CellsMatrix;
-import com.example.chess.logic.objects.game.GameContext;
 import com.example.chess.logic.objects.game.RootGameContext;
 import com.example.chess.logic.objects.move.ExtendedMove;
 import com.example.chess.service.BotService;
 import com.example.chess.service.GameService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 import javax.annotation.Nullable;
-import java.util.Comparator;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 
 @Log4j2
@@ -32,8 +33,11 @@ import java.util.stream.Collectors;
 public abstract class AbstractBotService implements BotService {
 
     protected GameService gameService;
-    protected Long botMoveDelay;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    protected TranspositionTable transpositionTable;
+    protected ForkJoinPool searchPool;
+    protected BotScheduler botScheduler;
+    //без Spring (бенчмарки, эксперименты) - глобальный реестр, в котором никого нет, т.е. метрики никуда не пишутся
+    protected MeterRegistry meterRegistry = Metrics.globalRegistry;
 
 //    protected void calculateRating(GameContext gameContext) {
 //        throw new UnsupportedOperationException();
@@ -44,116 +48,142 @@ public abstract class AbstractBotService implements BotService {
         this.gameService = gameService;
     }
 
-    @Value("${app.game.bot.move-delay}")
-    public void setBotMoveDelay(Long botMoveDelay) {
-        this.botMoveDelay = botMoveDelay;
+    @Autowired
+    public void setBotScheduler(BotScheduler botScheduler) {
+        this.botScheduler = botScheduler;
     }
 
-    @Profile
-    @Override
-    public void applyBotMove(Game game, @Nullable ExtendedMove playerLastMove) {
-        executorService.execute(() -> {
-            try {
-                Side botSide = game.getActiveSide();
-                CellsMatrix originalMatrix = gameService.createCellsMatrixByGame(game, game.getPosition());
-
-                RootGameContext rootContext = RootGameContext.of(game, originalMatrix, playerLastMove, botSide);
-
-                MoveDTO nextBotMove = findBestMove(rootContext);
-                gameService.applyMove(game, nextBotMove);
-
-                TimeUnit.SECONDS.sleep(1);
-            } catch (GameNotFoundException | InterruptedException e) {
-                log.error(e.getMessage(), e);
-            }
-        });
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
     }
 
+    @Value("${app.game.bot.tt-size-mb}")
+    public void setTranspositionTableSize(Integer sizeMb) {
+        this.transpositionTable = new TranspositionTable(sizeMb);
+    }
 
-    public static final int MAX_DEEP = 3;
-
-    private MoveDTO findBestMove(RootGameContext rootContext) {
-        Debug.resetCounters();
-        long start = System.currentTimeMillis();
-
-        rootContext.fill(MAX_DEEP);
+    /**
+     * Потоки перебора: один ForkJoinPool на все партии. 0 - по количеству ядер
+     */
+    @Value("${app.game.bot.threads}")
+    public void setThreads(Integer threads) {
+        this.searchPool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
 
-        if (!rootContext.hasChildren()) {
-            throw new RuntimeException("Checkmate: Player win!");
-        }
+    @Profile
+    @Override
+    public void applyBotMove(Game game, @Nullable ExtendedMove playerLastMove) throws BotBusyException {
+        botScheduler.submit(game.getId(), game.getPosition(), createBotMoveTask(game, playerLastMove));
+    }
 
-        log.info("totalMovesCount[before calculation]: " + rootContext.getTotalMovesCount());
+    @Profile
+    @Override
+    public ArrangementDTO applyPlayerMove(Game game, MoveDTO move) throws GameNotFoundException, BotBusyException {
+        botScheduler.reserve(game.getId());
 
-       GameContext resultContext;
+        Pair<CellsMatrix, ArrangementDTO> pair;
+        boolean isApplied = false;
         try {
-            calculateRatingRecursive(rootContext, MAX_DEEP);
-            resultContext = findBestExtendedMove(rootContext);
-        } catch (CheckmateException e) {
-            resultContext = e.getContext();
-        }
-
-        log.info("totalMovesCount[after calculation]: " + rootContext.getTotalMovesCount());
-
-        MoveDTO predestinedMove = Debug.getPredestinedMove(rootContext.getMatrix().getPosition());
-        if (predestinedMove != null) {
-            return predestinedMove;
+            pair = gameService.applyMove(game, move);
+            isApplied = true;
+        } finally {
+            if (!isApplied) {
+                botScheduler.cancelReservation();
+            }
         }
 
-        ExtendedMove resultMove = resultContext.getLastMove();
-        PieceType pieceFromPawn = resultMove.isPawnTransformation() ? resultMove.getPieceFromPawn() : null;
+        botScheduler.submitReserved(game.getId(), game.getPosition(), createBotMoveTask(game, move.toExtendedMove(pair.getKey())));
+        return pair.getValue();
+    }
 
+    private Consumer<BotMoveHandle> createBotMoveTask(Game game, @Nullable ExtendedMove playerLastMove) {
+        return handle -> {
+            Side botSide = game.getActiveSide();
+            CellsMatrix originalMatrix = gameService.createCellsMatrixByGame(game, handle.getPosition());
 
-        Debug.printCounters();
-        System.out.println("\r\nResultMove[original_pos = " + rootContext.getMatrix().getPosition() + "]: " + resultMove);
-        resultContext.print(0, "ResultMove");
-        System.out.println("\r\nfindBestMove executed in : " + (System.currentTimeMillis() - start) + "ms");
+            RootGameContext rootContext = RootGameContext.of(game, originalMatrix, playerLastMove, botSide, transpositionTable);
 
-        return MoveDTO.valueOf(resultMove.getPointFrom(), resultMove.getPointTo(), pieceFromPawn);
+            MoveDTO nextBotMove = findBotMove(handle, rootContext);
+            //пока считали, позиция могла исчезнуть (откат, сброс) - тогда ход уже не нужен
+            if (handle.applyIfNotCancelled(() -> applyMove(game, nextBotMove))) {
+                ponder(handle, rootContext, nextBotMove);
+            }
+        };
     }
 
-    private void calculateRatingRecursive(GameContext context, int deep) throws CheckmateException {
-        if (deep < 0) {
-            return;
+    private MoveDTO findBotMove(BotMoveHandle handle, RootGameContext rootContext) {
+        MoveDTO ponderedMove = takePonderedMove(handle.getGameId(), rootContext);
+        if (ponderedMove != null) {
+            return ponderedMove;
         }
+        //отмененный поиск (CancellationException) в метрику не попадает: его время ничего не говорит о скорости
+        Timer.Sample sample = Timer.start(meterRegistry);
+        MoveDTO move = findBestMove(rootContext, handle.getCancelSignal());
+        sample.stop(Timer.builder("chess.bot.search")
+                .description("findBestMove() of the bot")
+                .tag("bot", getClass().getSimpleName())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        return move;
+    }
 
-        if (!context.isRoot()) {
-            calculateRating(context, MAX_DEEP);
-        }
-        if (context.hasChildren()) {
-            if (context.isRoot()) {
-                context.childrenStream()
-                        .parallel()
-                        .forEach(childContext -> calculateRatingRecursive(childContext, deep - 1));
-            } else {
-                context.childrenStream()
-                        .forEach(childContext -> calculateRatingRecursive(childContext, deep - 1));
-            }
+    @Override
+    public void cancelBotMove(long gameId) {
+        botScheduler.cancel(gameId);
+    }
+
+    private void applyMove(Game game, MoveDTO move) {
+        try {
+            gameService.applyMove(game, move);
+        } catch (GameNotFoundException e) {
+            log.error(e.getMessage(), e);
         }
     }
 
-    private GameContext findBestExtendedMove(RootGameContext rootGameContext) {
-        List<GameContext> rootChildren = rootGameContext.childrenStream()
-                //FIXME: надо учитывать тоталы и более глубоких ходов
-                .sorted(Comparator.comparing(GameContext::getContextTotal))
-                .collect(Collectors.toList());
 
-        int max = rootChildren
-                .stream()
-                .mapToInt(GameContext::getContextTotal)
-                .max().orElseThrow(UnsupportedOperationException::new);
+    //глубина дерева GameContext (legacy-бот, см. BotServiceImplMedium)
+    public static final int MAX_DEEP = 3;
 
-        List<GameContext> topContextList = rootChildren
-                .stream()
-                .filter(context -> context.getContextTotal() == max)
-                .collect(Collectors.toList());
+    /**
+     * @param cancelSignal ход отменен (см. BotMoveHandle): перебор нужно свернуть и бросить CancellationException
+     */
+    protected abstract MoveDTO findBestMove(RootGameContext rootContext, AtomicBoolean cancelSignal);
+
+    /**
+     * Pondering: ход бота уже сделан, а поток еще свободен - можно считать позицию после ожидаемого ответа игрока.
+     * Задача отменяется (handle.getCancelSignal()), как только игрок походит. По умолчанию бот на времени игрока не думает.
+     *
+     * @param rootContext позиция, в которой бот сделал botMove
+     */
+    protected void ponder(BotMoveHandle handle, RootGameContext rootContext, MoveDTO botMove) {
+    }
 
-        return getRandomContext(topContextList);
+    /**
+     * @return ход, уже посчитанный для этой позиции во время pondering, или null - тогда ход считается обычным образом
+     */
+    @Nullable
+    protected MoveDTO takePonderedMove(long gameId, RootGameContext rootContext) {
+        return null;
     }
 
-    protected GameContext getRandomContext(List<GameContext> contextList) {
-        int i = (int) (contextList.size() * Math.random());
-        return contextList.get(i);
+    /**
+     * Скорость перебора - распределение по ходам (nodes - что считать узлом, решает реализация, см. SearchStats)
+     */
+    protected void recordNodesPerSecond(long nodes, long timeMs) {
+        DistributionSummary.builder("chess.bot.search.nps")
+                .description("Search nodes per second")
+                .baseUnit("nodes")
+                .tag("bot", getClass().getSimpleName())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1_000L)
+                .maximumExpectedValue(100_000_000L)
+                .register(meterRegistry)
+                .record(nodes * 1000.0 / Math.max(timeMs, 1));
     }
 
-    protected abstract void calculateRating(GameContext gameContext, int maxDeep) throws CheckmateException;
+    protected MoveDTO toMoveDTO(ExtendedMove move) {
+        PieceType pieceFromPawn = move.isPawnTransformation() ? move.getPieceFromPawn() : null;
+        return MoveDTO.valueOf(move.getPointFrom(), move.getPointTo(), pieceFromPawn);
+    }
 }
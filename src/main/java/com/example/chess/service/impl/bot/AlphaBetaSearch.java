@@ -0,0 +1,454 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.bitboard.MoveList;
+import com.example.chess.logic.bitboard.PackedMove;
+import com.example.chess.logic.objects.SearchBoard;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.chess.logic.ChessConstants.CHECKMATE_VALUE;
+import static com.example.chess.logic.bitboard.Bitboards.piece;
+import static com.example.chess.logic.bitboard.PackedMove.NO_MOVE;
+import static com.example.chess.service.impl.bot.TranspositionTable.*;
+
+/**
+ * Перебор в глубину с альфа-бета отсечениями (negamax) на SearchBoard.
+ * В отличие от GameContext.fill() + подсчета рейтинга дерево не хранится: в памяти только текущая ветка (стек SearchBoard)
+ * и таблица транспозиций, поэтому за то же время можно смотреть на 5-6 полуходов вместо 3-х.
+ * <p>
+ * Оценки - с точки зрения того, чей ход (см. Evaluator). Мат = -CHECKMATE_VALUE + ply, чтобы быстрый мат был лучше долгого.
+ * <p>
+ * На листьях (depth == 0) вместо статической оценки - quiescence search: досчитываются только взятия (и превращения),
+ * пока позиция не станет "спокойной". Иначе оценка обрывается посреди размена (горизонтный эффект).
+ * <p>
+ * Итеративное углубление: глубина 1, 2, 3... пока не кончится время. Каждая итерация начинается с лучшего хода
+ * предыдущей (он лежит в таблице транспозиций), а по дедлайну перебор просто сворачивается - результат недосчитанной
+ * итерации выбрасывается, и остается ход последней полностью досчитанной.
+ * <p>
+ * Порядок ходов (ход из таблицы, MVV-LVA, killers, history) - см. MoveOrdering.
+ * <p>
+ * Экземпляр одноразовый и не потокобезопасный: один поиск - один объект.
+ * Для параллельного перебора ParallelSearch создает по экземпляру на каждый ход из корня (см. searchRootMove()),
+ * а LazySmpSearch - по экземпляру на поток (см. setStopSignal(), setDepthOffset()).
+ */
+public class AlphaBetaSearch implements ISearch {
+
+    public static final int INFINITY = CHECKMATE_VALUE + 1;
+    public static final long NO_TIME_LIMIT = Long.MAX_VALUE;
+
+    //время проверяется раз в CHECK_TIME_INTERVAL узлов: System.nanoTime() на каждом узле слишком дорог
+    private static final int CHECK_TIME_INTERVAL = 1024;
+    //все оценки по модулю больше - это мат через (CHECKMATE_VALUE - |score|) полуходов
+    static final int MATE_THRESHOLD = CHECKMATE_VALUE - SearchBoard.MAX_PLY;
+    //delta pruning: запас на позиционную часть оценки, которую взятие может изменить помимо материала
+    private static final int DELTA_MARGIN = Evaluator.getPieceValue(PieceType.PAWN) * 2;
+
+    //null move: на сколько полуходов мельче проверяется позиция после пропуска хода (глубже - больше)
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    private static final int NULL_MOVE_DEEP_REDUCTION = 3;
+    private static final int NULL_MOVE_DEEP_DEPTH = 7;
+    //LMR: первые LMR_MIN_MOVES ходов (и все не тихие) всегда смотрятся на полную глубину
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3;
+    //futility: [depth] насколько тихий ход может поднять статическую оценку
+    private static final int NO_STATIC_EVAL = Integer.MIN_VALUE;
+    private static final int[] FUTILITY_MARGINS = {0, Evaluator.getPieceValue(PieceType.PAWN) * 2, Evaluator.getPieceValue(PieceType.ROOK)};
+
+    private final SearchBoard board;
+    private final TranspositionTable table;
+    private final MoveOrdering ordering;
+
+    @Getter
+    private final SearchStats stats = new SearchStats();
+    @Getter
+    private int bestMove = NO_MOVE;
+    @Getter
+    private int bestScore;
+    @Getter
+    private int completedDepth;
+
+    private long deadline;
+    private boolean hasDeadline;
+    private AtomicBoolean stopSignal;
+    private PruningSettings pruning = PruningSettings.ALL_ENABLED;
+    private int depthOffset;
+    @Getter
+    private boolean isAborted;
+    private int iterationBestMove;
+
+    public AlphaBetaSearch(SearchBoard board, TranspositionTable table) {
+        this(board, table, new MoveOrdering());
+    }
+
+    /**
+     * @param ordering killers и history, накопленные предыдущими переборами в этом же потоке (см. ParallelSearch)
+     */
+    AlphaBetaSearch(SearchBoard board, TranspositionTable table, MoveOrdering ordering) {
+        this.board = board;
+        this.table = table;
+        this.ordering = ordering;
+    }
+
+    /**
+     * Перебор на фиксированную глубину (без ограничения по времени)
+     */
+    public int search(Side nextTurnSide, int depth) {
+        return search(nextTurnSide, depth, NO_TIME_LIMIT);
+    }
+
+    /**
+     * Первая итерация досчитывается всегда (даже если бюджет уже вышел), иначе ходить будет нечем
+     */
+    @Override
+    public int search(Side nextTurnSide, int maxDepth, long timeLimitMs) {
+        long start = System.nanoTime();
+        long timeLimit = timeLimitMs == NO_TIME_LIMIT ? 0 : TimeUnit.MILLISECONDS.toNanos(timeLimitMs);
+        deadline = start + timeLimit;
+        hasDeadline = false;
+        isAborted = false;
+        bestMove = NO_MOVE;
+        completedDepth = 0;
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            iterationBestMove = NO_MOVE;
+            int score = negamax(nextTurnSide, depth + depthOffset, -INFINITY, INFINITY, 0, false);
+            if (isAborted) {
+                break;
+            }
+
+            bestMove = iterationBestMove;
+            bestScore = score;
+            completedDepth = depth + depthOffset;
+
+            //дедлайн включается только после первой итерации
+            hasDeadline = timeLimitMs != NO_TIME_LIMIT;
+
+            if (bestMove == NO_MOVE || Math.abs(score) > MATE_THRESHOLD) {
+                //ходов нет или мат уже найден - глубже смотреть незачем
+                break;
+            }
+            if (hasDeadline && System.nanoTime() - start > timeLimit / 2) {
+                //следующая итерация в разы дольше текущей - за оставшиеся полбюджета она все равно не успеет
+                break;
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * Оценка одного хода из корня с окном (alpha, beta) на заданную глубину (без итеративного углубления).
+     * Нужна ParallelSearch, который сам делит ходы корня между потоками. Если поиск прерван по дедлайну - isAborted().
+     */
+    int searchRootMove(Side side, int move, int depth, int alpha, int beta) {
+        isAborted = false;
+
+        board.makeMove(move);
+        int score = -negamax(side.reverse(), depth - 1, -beta, -alpha, 1, true);
+        board.unmakeMove();
+
+        return score;
+    }
+
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+        this.hasDeadline = true;
+    }
+
+    @Override
+    public void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+    }
+
+    @Override
+    public void setPruning(PruningSettings pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * Каждая итерация углубления считается на depthOffset полуходов глубже (помощники Lazy SMP)
+     */
+    void setDepthOffset(int depthOffset) {
+        this.depthOffset = depthOffset;
+    }
+
+    @Override
+    public long getNodes() {
+        return stats.getTotalNodes();
+    }
+
+    private boolean checkDeadline() {
+        if (!isAborted && stats.getTotalNodes() % CHECK_TIME_INTERVAL == 0) {
+            isAborted = hasDeadline && System.nanoTime() - deadline > 0
+                    || stopSignal != null && stopSignal.get();
+        }
+        return isAborted;
+    }
+
+    /**
+     * @param isNullMoveAllowed false - сразу после пропуска хода (два null move подряд ничего не проверяют) и в корне
+     */
+    private int negamax(Side side, int depth, int alpha, int beta, int ply, boolean isNullMoveAllowed) {
+        stats.onNode();
+        if (checkDeadline()) {
+            //результат уже никому не нужен - просто сворачиваемся (makeMove/unmakeMove выше по стеку остаются парными)
+            return 0;
+        }
+        if (depth <= 0) {
+            return quiescence(side, alpha, beta, ply);
+        }
+
+        boolean isRoot = ply == 0;
+        long key = board.getKey();
+        long entry = table.probe(key);
+        stats.onTtProbe(entry != NO_ENTRY);
+        int hashMove = NO_MOVE;
+
+        if (entry != NO_ENTRY) {
+            hashMove = getMove(entry);
+
+            //в корне нужен сам ход, а не только оценка - поэтому там отсечение по таблице не делаем
+            if (!isRoot && getDepth(entry) >= depth) {
+                int score = fromTable(getScore(entry), ply);
+                int bound = getBound(entry);
+
+                if (bound == EXACT
+                        || bound == LOWER_BOUND && score >= beta
+                        || bound == UPPER_BOUND && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        boolean isUnderCheck = board.isUnderCheck(side);
+        //статическая оценка нужна только null move и futility, поэтому считается по требованию
+        int staticEval = NO_STATIC_EVAL;
+
+        if (isNullMoveAllowed && pruning.isNullMoveEnabled() && !isUnderCheck && depth >= NULL_MOVE_MIN_DEPTH
+                && Math.abs(beta) < MATE_THRESHOLD && hasPiecesBesidesPawns(side)) {
+
+            staticEval = Evaluator.evaluate(board, side);
+            if (staticEval >= beta) {
+                //даже если пропустить ход, сопернику не опустить оценку ниже beta - настоящий ход тем более не хуже
+                int reduction = depth >= NULL_MOVE_DEEP_DEPTH ? NULL_MOVE_DEEP_REDUCTION : NULL_MOVE_REDUCTION;
+
+                board.makeNullMove(side);
+                int score = -negamax(side.reverse(), depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+                board.unmakeMove();
+
+                if (isAborted) {
+                    return 0;
+                }
+                if (score >= beta) {
+                    //мат после пропуска хода ничего не доказывает
+                    return score > MATE_THRESHOLD ? beta : score;
+                }
+            }
+        }
+
+        boolean isFutile = false;
+        if (pruning.isFutilityPruningEnabled() && !isUnderCheck && depth < FUTILITY_MARGINS.length && Math.abs(alpha) < MATE_THRESHOLD) {
+            if (staticEval == NO_STATIC_EVAL) {
+                staticEval = Evaluator.evaluate(board, side);
+            }
+            isFutile = staticEval + FUTILITY_MARGINS[depth] <= alpha;
+        }
+
+        MoveList moves = board.generateMoves(side);
+        stats.onMoveGeneration();
+        if (moves.isEmpty()) {
+            //мат или пат
+            return isUnderCheck ? -CHECKMATE_VALUE + ply : 0;
+        }
+        ordering.scoreMoves(moves, hashMove, ply);
+
+        int alphaOrig = alpha;
+        int best = -INFINITY;
+        int bestMoveInNode = NO_MOVE;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = MoveOrdering.selectNext(moves, i);
+            boolean isQuiet = !MoveOrdering.isTactical(move);
+
+            board.makeMove(move);
+            boolean isCheck = board.isUnderCheck(side.reverse());
+
+            if (isFutile && isQuiet && !isCheck && i > 0) {
+                //тихий ход у листьев не поднимет оценку до alpha даже с запасом
+                board.unmakeMove();
+                best = Math.max(best, staticEval + FUTILITY_MARGINS[depth]);
+                continue;
+            }
+
+            int score;
+            if (pruning.isLateMoveReductionEnabled() && depth >= LMR_MIN_DEPTH && i >= LMR_MIN_MOVES
+                    && isQuiet && !isUnderCheck && !isCheck && !MoveOrdering.isKillerOrBetter(moves.getScore(i))) {
+
+                //поздний тихий ход почти наверняка плохой: сначала проверяем это мельче и с нулевым окном
+                score = -negamax(side.reverse(), depth - 2, -alpha - 1, -alpha, ply + 1, true);
+                if (score > alpha && !isAborted) {
+                    //не подтвердилось - пересчет на полную глубину
+                    score = -negamax(side.reverse(), depth - 1, -beta, -alpha, ply + 1, true);
+                }
+            } else {
+                score = -negamax(side.reverse(), depth - 1, -beta, -alpha, ply + 1, true);
+            }
+            board.unmakeMove();
+
+            if (isAborted) {
+                //недосчитанная оценка в таблицу попасть не должна
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                bestMoveInNode = move;
+                if (isRoot) {
+                    iterationBestMove = move;
+                }
+
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        ordering.onCutoff(move, depth, ply);
+                        stats.onCutoff();
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best <= alphaOrig ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+        table.store(key, depth, toTable(best, ply), bound, bestMoveInNode);
+        return best;
+    }
+
+    /**
+     * Только король и пешки - типичный цугцванг (пропуск хода был бы выгоден, но по правилам невозможен),
+     * null move в таких позициях врет
+     */
+    private boolean hasPiecesBesidesPawns(Side side) {
+        return (board.getPieces(side) & ~board.getPieces(side, PieceType.PAWN) & ~board.getPieces(side, PieceType.KING)) != 0;
+    }
+
+    /**
+     * Перебор только взятий.
+     * - stand pat: сторона не обязана рубить, поэтому статическая оценка - нижняя граница (если она уже >= beta - отсечение)
+     * - delta pruning: взятие, которое даже с запасом DELTA_MARGIN не поднимет оценку до alpha, не перебираем
+     * - под шахом stand pat не работает (стоять нельзя), поэтому перебираются все ходы - иначе не увидим мат
+     */
+    private int quiescence(Side side, int alpha, int beta, int ply) {
+        stats.onQuiescenceNode();
+        if (checkDeadline()) {
+            return 0;
+        }
+        if (ply >= SearchBoard.MAX_PLY - 1) {
+            return Evaluator.evaluate(board, side);
+        }
+
+        boolean isUnderCheck = board.isUnderCheck(side);
+        int best = -INFINITY;
+        int standPat = 0;
+        MoveList moves;
+
+        if (isUnderCheck) {
+            moves = board.generateMoves(side);
+            if (moves.isEmpty()) {
+                return -CHECKMATE_VALUE + ply;
+            }
+        } else {
+            standPat = Evaluator.evaluate(board, side);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            if (standPat + Evaluator.getPieceValue(PieceType.QUEEN) + DELTA_MARGIN < alpha) {
+                //даже если срубить ферзя - до alpha не дотянуть
+                return standPat;
+            }
+
+            best = standPat;
+            alpha = Math.max(alpha, standPat);
+            moves = board.generateCaptures(side);
+        }
+        stats.onMoveGeneration();
+        MoveOrdering.scoreCaptures(moves);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = MoveOrdering.selectNext(moves, i);
+
+            if (!isUnderCheck) {
+                PieceType pieceFromPawn = PackedMove.getPieceFromPawn(move);
+                if (pieceFromPawn != null && pieceFromPawn != PieceType.QUEEN) {
+                    //слабые превращения в поиске взятий не интересны
+                    continue;
+                }
+                if (standPat + getMaterialGain(move) + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+            }
+
+            board.makeMove(move);
+            int score = -quiescence(side.reverse(), -beta, -alpha, ply + 1);
+            board.unmakeMove();
+
+            if (isAborted) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        stats.onCutoff();
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * На сколько изменится материал того, кто ходит: стоимость срубленной фигуры + выигрыш от превращения пешки
+     */
+    static int getMaterialGain(int move) {
+        int gain = 0;
+        if (PackedMove.isCapture(move)) {
+            gain += Evaluator.getPieceValue(piece(PackedMove.capturedPieceIndex(move)).getType());
+        }
+        PieceType pieceFromPawn = PackedMove.getPieceFromPawn(move);
+        if (pieceFromPawn != null) {
+            gain += Evaluator.getPieceValue(pieceFromPawn) - Evaluator.getPieceValue(PieceType.PAWN);
+        }
+        return gain;
+    }
+
+    /*
+     * Оценка мата зависит от ply, на котором он найден. В таблице храним расстояние до мата от самой позиции,
+     * иначе при транспозиции на другой глубине расстояние будет неверным.
+     */
+    private static int toTable(int score, int ply) {
+        if (score > MATE_THRESHOLD) {
+            return score + ply;
+        }
+        if (score < -MATE_THRESHOLD) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > MATE_THRESHOLD) {
+            return score - ply;
+        }
+        if (score < -MATE_THRESHOLD) {
+            return score + ply;
+        }
+        return score;
+    }
+}
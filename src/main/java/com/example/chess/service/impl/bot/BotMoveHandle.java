@@ -0,0 +1,67 @@
+package com.example.chess.service.impl.bot;
+
+import lombok.Getter;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ход бота, поставленный в BotScheduler: привязан к партии и позиции, для которой считается.
+ * <p>
+ * Отмена кооперативная: перебор периодически проверяет getCancelSignal() и сворачивается,
+ * а если ход все-таки досчитан - он уже не применяется (см. applyIfNotCancelled()).
+ */
+public class BotMoveHandle {
+
+    @Getter
+    private final long gameId;
+    @Getter
+    private final int position;
+    @Getter
+    private final AtomicBoolean cancelSignal = new AtomicBoolean();
+    private volatile Future<?> future;
+    //ход уже сделан: дальше задача только думает на времени игрока (pondering), и отменять ее - не потеря хода
+    @Getter
+    private volatile boolean isMoveApplied;
+
+    BotMoveHandle(long gameId, int position) {
+        this.gameId = gameId;
+        this.position = position;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    public boolean isCancelled() {
+        return cancelSignal.get();
+    }
+
+    /**
+     * После возврата из cancel() ход этой задачи точно не будет применен:
+     * если он как раз применяется - cancel() дождется окончания (поэтому откат/сброс партии после cancel() безопасен)
+     */
+    synchronized void cancel() {
+        cancelSignal.set(true);
+
+        Future<?> future = this.future;
+        if (future != null) {
+            //если задача еще в очереди - она просто не запустится
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Применение хода и отмена взаимоисключающие: ход либо применяется целиком до отмены, либо не применяется вовсе
+     *
+     * @return false - задача уже отменена, action не выполнялся
+     */
+    public synchronized boolean applyIfNotCancelled(Runnable action) {
+        if (isCancelled()) {
+            return false;
+        }
+        action.run();
+        isMoveApplied = true;
+        return true;
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.exceptions.BotBusyException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Планировщик ходов бота для всех партий сервера:
+ * - ограниченный пул потоков (по умолчанию - по количеству ядер), так что долгий перебор в одной партии не держит остальные
+ * - не больше одной задачи (в очереди или в работе) на партию: повторные запросы для той же позиции, пока ход еще не сделан,
+ * отбрасываются, а запрос для другой позиции отменяет текущую задачу (позиции, для которой она считала, больше нет)
+ * - cancel() - отмена хода при откате или сбросе партии (см. BotMoveHandle)
+ * - после хода задача может еще думать на времени игрока (pondering, см. BotServiceImplHard.ponder()) - она занимает поток,
+ * пока игрок не походит (тогда ее отменяет задача для новой позиции), не кончится бюджет или задаче другой партии
+ * не придется ждать в очереди (тогда pondering отменяется весь, см. stopPondering())
+ * - очередь ограничена: если она заполнена - задача отклоняется сразу, а не копится бесконечно.
+ * Место (поток или очередь) можно занять заранее - reserve(): тогда submitReserved() уже не будет отклонен
+ * (так ход игрока сохраняется, только если на ответ бота есть место, см. BotService.applyPlayerMove())
+ * <p>
+ * Сами задачи ничего не ждут (никаких sleep): поток освобождается сразу после хода.
+ * Счетчики (getSubmittedCount() и т.д.) и текущее состояние очереди - для мониторинга: они же публикуются в Micrometer
+ * (chess.bot.scheduler.*, см. bindTo()), а оттуда - на /actuator/prometheus.
+ */
+@Log4j2
+@Component
+public class BotScheduler implements MeterBinder {
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    //места на задачи: потоки + очередь. Место занято с reserve() до конца (или отмены) задачи
+    private final Semaphore slots;
+    private final ConcurrentHashMap<Long, BotMoveHandle> activeMoves = new ConcurrentHashMap<>();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * @param workers       потоков на ходы бота. 0 - по количеству ядер
+     * @param queueCapacity сколько партий может ждать свободного потока
+     */
+    public BotScheduler(@Value("${app.game.bot.scheduler.workers}") int workers,
+                        @Value("${app.game.bot.scheduler.queue-capacity}") int queueCapacity) {
+
+        int threadsCount = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.queueCapacity = queueCapacity;
+        this.slots = new Semaphore(threadsCount + queueCapacity);
+        //размер очереди ограничивают slots: сама очередь задачи не отклоняет
+        // (отмененная задача освобождает место сразу, хотя ее поток может еще несколько мс сворачивать перебор)
+        this.executor = new ThreadPoolExecutor(threadsCount, threadsCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "bot-worker-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @param position позиция, для которой считается ход
+     * @return false - если задача для этой позиции уже есть (новая не нужна: ход и так будет сделан)
+     * @throws BotBusyException очередь заполнена - задача не будет выполнена
+     */
+    public boolean submit(long gameId, int position, Consumer<BotMoveHandle> task) throws BotBusyException {
+        //дубликату место не нужно: без этой проверки повтор запроса при заполненной очереди получил бы отказ
+        BotMoveHandle activeHandle = activeMoves.get(gameId);
+        if (activeHandle != null && activeHandle.getPosition() == position) {
+            duplicateCount.incrementAndGet();
+            log.debug("Bot move for game " + gameId + " is already in progress");
+            return false;
+        }
+        reserve(gameId);
+        return submitReserved(gameId, position, task);
+    }
+
+    /**
+     * Занимает место под задачу. Дальше - ровно один вызов: submitReserved() или cancelReservation()
+     *
+     * @throws BotBusyException очередь заполнена
+     */
+    public void reserve(long gameId) throws BotBusyException {
+        if (slots.tryAcquire()) {
+            return;
+        }
+        //место может занимать pondering этой же партии - его все равно отменит задача для новой позиции
+        BotMoveHandle activeHandle = activeMoves.get(gameId);
+        if (activeHandle != null && activeHandle.isMoveApplied() && activeMoves.remove(gameId, activeHandle)) {
+            cancel(activeHandle);
+        }
+        if (!slots.tryAcquire()) {
+            rejectedCount.incrementAndGet();
+            String message = "Bot move for game " + gameId + " rejected: " + getQueueSize() + " of " + queueCapacity + " queued, "
+                    + getActiveCount() + " in progress";
+            log.warn(message);
+            throw new BotBusyException(message);
+        }
+    }
+
+    /**
+     * Место, занятое reserve(), не понадобилось
+     */
+    public void cancelReservation() {
+        slots.release();
+    }
+
+    /**
+     * То же, что submit(), но место уже занято (reserve()) - поэтому задача не отклоняется.
+     * Место освобождается само: когда задача закончится или будет отменена (или сразу - если это дубликат)
+     *
+     * @return false - если задача для этой позиции уже есть (новая не нужна: ход и так будет сделан)
+     */
+    public boolean submitReserved(long gameId, int position, Consumer<BotMoveHandle> task) {
+        BotMoveHandle handle = new BotMoveHandle(gameId, position);
+
+        BotMoveHandle activeHandle = activeMoves.compute(gameId, (id, previous) -> {
+            if (previous != null && previous.getPosition() == position) {
+                return previous;
+            }
+            if (previous != null) {
+                cancel(previous);
+            }
+            return handle;
+        });
+
+        if (activeHandle != handle) {
+            slots.release();
+            duplicateCount.incrementAndGet();
+            log.debug("Bot move for game " + gameId + " is already in progress");
+            return false;
+        }
+
+        FutureTask<Void> future = new FutureTask<Void>(() -> run(handle, task), null) {
+            @Override
+            protected void done() {
+                //вызывается ровно один раз: и после выполнения, и при отмене (в т.ч. задачи, которая так и не запустилась)
+                slots.release();
+            }
+        };
+        handle.setFuture(future);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            //только после shutdown(): очередь не ограничена
+            activeMoves.remove(gameId, handle);
+            slots.release();
+            throw e;
+        }
+        if (getQueueSize() > 0) {
+            stopPondering();
+        }
+
+        submittedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Отменяет ход бота для партии (если он есть). После возврата ход уже точно не будет применен
+     *
+     * @return false - отменять было нечего
+     */
+    public boolean cancel(long gameId) {
+        BotMoveHandle handle = activeMoves.remove(gameId);
+        if (handle == null) {
+            return false;
+        }
+        cancel(handle);
+        return true;
+    }
+
+    private void cancel(BotMoveHandle handle) {
+        handle.cancel();
+        if (handle.isMoveApplied()) {
+            //ход уже сделан, останавливается только pondering
+            log.debug("Pondering for game " + handle.getGameId() + " (position = " + handle.getPosition() + ") stopped");
+            return;
+        }
+        cancelledCount.incrementAndGet();
+        //отмененная задача, которая еще не дошла до потока, не должна занимать место в очереди
+        executor.purge();
+        log.info("Bot move for game " + handle.getGameId() + " (position = " + handle.getPosition() + ") cancelled");
+    }
+
+    /**
+     * Отменяет все задачи, которые уже сделали ход и только думают на времени игрока: поток нужнее ходам из очереди
+     */
+    private void stopPondering() {
+        for (BotMoveHandle handle : activeMoves.values()) {
+            if (handle.isMoveApplied() && activeMoves.remove(handle.getGameId(), handle)) {
+                cancel(handle);
+            }
+        }
+    }
+
+    private void run(BotMoveHandle handle, Consumer<BotMoveHandle> task) {
+        try {
+            if (!handle.isCancelled()) {
+                task.accept(handle);
+            }
+            if (handle.isMoveApplied() || !handle.isCancelled()) {
+                completedCount.incrementAndGet();
+            }
+        } catch (CancellationException e) {
+            log.debug(e.getMessage());
+        } catch (RuntimeException e) {
+            failedCount.incrementAndGet();
+            log.error(e.getMessage(), e);
+        } finally {
+            activeMoves.remove(handle.getGameId(), handle);
+        }
+    }
+
+    /**
+     * Spring Boot вызывает сам для всех бинов MeterBinder
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCounter(registry, "submitted", BotScheduler::getSubmittedCount);
+        bindCounter(registry, "duplicate", BotScheduler::getDuplicateCount);
+        bindCounter(registry, "rejected", BotScheduler::getRejectedCount);
+        bindCounter(registry, "cancelled", BotScheduler::getCancelledCount);
+        bindCounter(registry, "completed", BotScheduler::getCompletedCount);
+        bindCounter(registry, "failed", BotScheduler::getFailedCount);
+
+        Gauge.builder("chess.bot.scheduler.queue.size", this, BotScheduler::getQueueSize)
+                .description("Bot moves waiting for a free worker")
+                .register(registry);
+        Gauge.builder("chess.bot.scheduler.queue.capacity", this, scheduler -> scheduler.queueCapacity)
+                .register(registry);
+        Gauge.builder("chess.bot.scheduler.active", this, BotScheduler::getActiveCount)
+                .description("Workers busy with a bot move or pondering")
+                .register(registry);
+    }
+
+    private void bindCounter(MeterRegistry registry, String result, ToDoubleFunction<BotScheduler> count) {
+        FunctionCounter.builder("chess.bot.scheduler.moves", this, count)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * Запросы, отброшенные потому что для этой позиции партии уже есть задача
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Запросы, отклоненные из-за заполненной очереди
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Ходы, отмененные из-за отката/сброса партии или нового хода для другой позиции
+     */
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.dto.MoveDTO;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.bitboard.PackedMove;
+import com.example.chess.logic.bitboard.Zobrist;
+import com.example.chess.logic.debug.Debug;
+import com.example.chess.logic.objects.IMatrix;
+import com.example.chess.logic.objects.SearchBoard;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.game.IGame;
+import com.example.chess.logic.objects.game.RootGameContext;
+import com.example.chess.logic.objects.move.ExtendedMove;
+import com.google.common.base.Preconditions;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Бот на AlphaBetaSearch: дерево GameContext не строится, позиция перебирается на SearchBoard прямо из корня.
+ * Если в пуле перебора больше одного потока (app.game.bot.threads) - ходы корня делятся между ними (ParallelSearch).
+ * Включается через app.game.bot.implementation=hard (по умолчанию).
+ * <p>
+ * Pondering (app.game.bot.ponder): после своего хода бот берет из таблицы транспозиций ожидаемый ответ игрока
+ * (следующий ход главной линии) и считает получившуюся позицию, пока игрок думает (не дольше app.game.bot.ponder-time).
+ * Если игрок сходил именно так - готовый результат отдается сразу (или, если pondering не успел, перебор продолжается
+ * с уже заполненной таблицей транспозиций).
+ */
+@Service
+@Log4j2
+@ConditionalOnProperty(name = "app.game.bot.implementation", havingValue = "hard", matchIfMissing = true)
+public class BotServiceImplHard extends AbstractBotService {
+
+    private Integer searchDepth;
+    private Long timePerMove;
+    private Boolean isPonderEnabled;
+    private Long ponderTime;
+    private Boolean isNullMoveEnabled;
+    private Boolean isLateMoveReductionEnabled;
+    private Boolean isFutilityPruningEnabled;
+
+    //[gameId] pondering, запущенный после последнего хода бота в партии
+    private final ConcurrentHashMap<Long, Ponder> ponders = new ConcurrentHashMap<>();
+
+    /**
+     * Максимальная глубина итеративного углубления (если время еще осталось)
+     */
+    @Value("${app.game.bot.search-depth}")
+    public void setSearchDepth(Integer searchDepth) {
+        this.searchDepth = searchDepth;
+    }
+
+    /**
+     * Бюджет времени на ход в миллисекундах. 0 - без ограничения, только search-depth
+     */
+    @Value("${app.game.bot.time-per-move}")
+    public void setTimePerMove(Long timePerMove) {
+        this.timePerMove = timePerMove;
+    }
+
+    /**
+     * Эвристики выборочного перебора (см. PruningSettings) включаются по отдельности, чтобы сравнивать замеры с ними и без
+     */
+    @Value("${app.game.bot.search.null-move}")
+    public void setNullMoveEnabled(Boolean isNullMoveEnabled) {
+        this.isNullMoveEnabled = isNullMoveEnabled;
+    }
+
+    @Value("${app.game.bot.search.lmr}")
+    public void setLateMoveReductionEnabled(Boolean isLateMoveReductionEnabled) {
+        this.isLateMoveReductionEnabled = isLateMoveReductionEnabled;
+    }
+
+    @Value("${app.game.bot.search.futility}")
+    public void setFutilityPruningEnabled(Boolean isFutilityPruningEnabled) {
+        this.isFutilityPruningEnabled = isFutilityPruningEnabled;
+    }
+
+    @Value("${app.game.bot.ponder}")
+    public void setPonderEnabled(Boolean isPonderEnabled) {
+        this.isPonderEnabled = isPonderEnabled;
+    }
+
+    /**
+     * Бюджет времени на pondering в миллисекундах. Поток бота занят, пока игрок не походит, бюджет не кончится
+     * или другой партии не понадобится поток (см. BotScheduler). Без ограничения (0, как у time-per-move) нельзя:
+     * партия, которую бросили, держала бы поток до search-depth
+     */
+    @Value("${app.game.bot.ponder-time}")
+    public void setPonderTime(Long ponderTime) {
+        Preconditions.checkArgument(ponderTime > 0, "Ponder time must be positive");
+        this.ponderTime = ponderTime;
+    }
+
+    @Override
+    protected MoveDTO findBestMove(RootGameContext rootContext, AtomicBoolean cancelSignal) {
+        transpositionTable.newSearch();
+        long start = System.currentTimeMillis();
+
+        MoveDTO predestinedMove = Debug.getPredestinedMove(rootContext.getPosition());
+        if (predestinedMove != null) {
+            return predestinedMove;
+        }
+
+        ISearch search = createSearch(rootContext.getMatrix(), rootContext.getGame());
+        search.setStopSignal(cancelSignal);
+        search.setPruning(getPruning());
+        long timeLimit = timePerMove > 0 ? timePerMove : AlphaBetaSearch.NO_TIME_LIMIT;
+        int score = search.search(rootContext.nextTurnSide(), searchDepth, timeLimit);
+
+        if (cancelSignal.get()) {
+            throw new CancellationException("Search cancelled: position = " + rootContext.getPosition());
+        }
+
+        if (search.getBestMove() == PackedMove.NO_MOVE) {
+            throw new RuntimeException("Checkmate: Player win!");
+        }
+
+        ExtendedMove resultMove = PackedMove.toExtendedMove(search.getBestMove());
+        long time = System.currentTimeMillis() - start;
+
+        log.info("ResultMove[original_pos = " + rootContext.getPosition() + ", depth = " + search.getCompletedDepth() + "]: " + resultMove + ", score = " + score);
+        log.info(search.getStats() + ", nps = " + search.getNodes() * 1000 / Math.max(time, 1));
+        log.info("findBestMove executed in : " + time + "ms");
+        recordNodesPerSecond(search.getNodes(), time);
+
+        return toMoveDTO(resultMove);
+    }
+
+    private PruningSettings getPruning() {
+        return new PruningSettings(isNullMoveEnabled, isLateMoveReductionEnabled, isFutilityPruningEnabled);
+    }
+
+    protected ISearch createSearch(IMatrix matrix, IGame game) {
+        if (searchPool.getParallelism() > 1) {
+            return new ParallelSearch(matrix, game, transpositionTable, searchPool);
+        }
+        SearchBoard board = SearchBoard.ofCurrentThread(matrix, game);
+        return new AlphaBetaSearch(board, transpositionTable);
+    }
+
+    @Override
+    protected void ponder(BotMoveHandle handle, RootGameContext rootContext, MoveDTO botMove) {
+        if (!isPonderEnabled || botScheduler.getQueueSize() > 0) {
+            //другие партии ждут свободного потока - их ходы важнее
+            return;
+        }
+
+        SearchBoard board = SearchBoard.ofCurrentThread(rootContext.getMatrix(), rootContext.getGame());
+        board.makeMove(PackedMove.of(board, botMove));
+
+        int expectedMove = getExpectedMove(board, rootContext.getBotSide().reverse());
+        if (expectedMove == PackedMove.NO_MOVE) {
+            return;
+        }
+        board.makeMove(expectedMove);
+
+        //доску потока займет перебор - дальше только копии
+        IMatrix matrix = board.snapshot();
+        IGame game = FakeGame.ofGame(board);
+        Ponder ponder = new Ponder(board.getKey(), expectedMove);
+        ponders.put(handle.getGameId(), ponder);
+
+        try {
+            ISearch search = createSearch(matrix, game);
+            search.setStopSignal(handle.getCancelSignal());
+            search.setPruning(getPruning());
+            search.search(rootContext.getBotSide(), searchDepth, ponderTime);
+
+            ponder.bestMove = search.getBestMove();
+            ponder.completedDepth = search.getCompletedDepth();
+            //остановлен (ход игрока или очередь BotScheduler), а не бюджетом - результат может быть мельче обычного хода
+            ponder.isStopped = handle.isCancelled();
+
+            log.info("Pondering[expected = " + PackedMove.toExtendedMove(expectedMove) + ", depth = " + ponder.completedDepth
+                    + ", stopped = " + ponder.isStopped + "]: nodes = " + search.getNodes());
+        } finally {
+            ponder.finished.countDown();
+        }
+    }
+
+    /**
+     * Ход главной линии из таблицы транспозиций (его могло и не быть - например, если позиция уже вытеснена)
+     */
+    private int getExpectedMove(SearchBoard board, Side side) {
+        long entry = transpositionTable.probe(board.getKey());
+        if (entry == TranspositionTable.NO_ENTRY) {
+            return PackedMove.NO_MOVE;
+        }
+
+        int move = TranspositionTable.getMove(entry);
+        //ключ мог совпасть случайно - ход должен быть возможен в этой позиции
+        return board.generateMoves(side).contains(move) ? move : PackedMove.NO_MOVE;
+    }
+
+    @Override
+    @Nullable
+    protected MoveDTO takePonderedMove(long gameId, RootGameContext rootContext) {
+        Ponder ponder = ponders.remove(gameId);
+        if (ponder == null) {
+            return null;
+        }
+        if (ponder.key != Zobrist.getKey(rootContext.getMatrix(), rootContext.getGame())) {
+            log.info("Ponder miss: expected = " + PackedMove.toExtendedMove(ponder.expectedMove));
+            return null;
+        }
+
+        //игрок уже походил, а значит задача pondering отменена (новой позицией) - ждать недолго
+        try {
+            ponder.finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        if (ponder.isStopped || ponder.bestMove == PackedMove.NO_MOVE) {
+            log.info("Ponder hit: depth = " + ponder.completedDepth + ", continue search");
+            return null;
+        }
+
+        ExtendedMove resultMove = PackedMove.toExtendedMove(ponder.bestMove);
+        log.info("Ponder hit: depth = " + ponder.completedDepth + ", move = " + resultMove);
+        return toMoveDTO(resultMove);
+    }
+
+    @Override
+    public void cancelBotMove(long gameId) {
+        super.cancelBotMove(gameId);
+        ponders.remove(gameId);
+    }
+
+    /**
+     * Результат pondering: поля пишет поток pondering до finished.countDown(), читать - только после finished.await()
+     */
+    private static class Ponder {
+
+        //позиция после ожидаемого ответа игрока
+        private final long key;
+        private final int expectedMove;
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private int bestMove = PackedMove.NO_MOVE;
+        private int completedDepth;
+        private boolean isStopped = true;
+
+        private Ponder(long key, int expectedMove) {
+            this.key = key;
+            this.expectedMove = expectedMove;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.logic.objects.IMatrix;
+import com.example.chess.logic.objects.game.IGame;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * То же, что BotServiceImplHard, но потоки пула перебора используются по схеме Lazy SMP (см. LazySmpSearch),
+ * а не делят между собой ходы корня. Включается через app.game.bot.implementation=lazy-smp.
+ */
+@Service
+@ConditionalOnProperty(name = "app.game.bot.implementation", havingValue = "lazy-smp")
+public class BotServiceImplLazySmp extends BotServiceImplHard {
+
+    @Override
+    protected ISearch createSearch(IMatrix matrix, IGame game) {
+        return new LazySmpSearch(matrix, game, transpositionTable, searchPool, searchPool.getParallelism());
+    }
+}
@@ -1,25 +1,188 @@
 package com.example.chess.service.impl.bot;
 
+import com.example.chess.dto.MoveDTO;
 import com.example.chess.enums.RatingParam;
 import com.example.chess.exceptions.CheckmateException;
 import com.example.chess.logic.MoveHelper;
+import com.example.chess.logic.debug.Debug;
 import com.example.chess.logic.objects.Rating;
 import com.example.chess.logic.objects.game.GameContext;
+import com.example.chess.logic.objects.game.RootGameContext;
 import com.example.chess.logic.objects.move.ExtendedMove;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
 import static com.example.chess.service.impl.bot.MaterialRatingCalculator.getInvertedMaterialRating;
 import static com.example.chess.service.impl.bot.MaterialRatingCalculator.getMaterialRating;
 
 
+/**
+ * Legacy-бот: строит дерево GameContext на MAX_DEEP полуходов, затем считает рейтинги и ищет min/max по тоталам.
+ * Включается через app.game.bot.implementation=medium
+ * <p>
+ * Дерево не выбрасывается между ходами: поддерево сделанного хода хранится до ответа игрока,
+ * и следующее дерево начинается с его ветки для этого ответа (см. RootGameContext.reuseTree()).
+ */
 @Service
 @Log4j2
+@ConditionalOnProperty(name = "app.game.bot.implementation", havingValue = "medium")
 public class BotServiceImplMedium extends AbstractBotService {
 
+    //сколько партий держат поддерево последнего хода и как долго (заброшенная партия не должна держать его вечно)
+    private static final int PREVIOUS_TREES_MAX_SIZE = 64;
+    private static final long PREVIOUS_TREES_TTL_MINUTES = 30;
+    //хватает на несколько деревьев MAX_DEEP, старые позиции вытесняются (таблица транспозиций - только для оценок поддеревьев)
+    private static final int MOVES_AFTER_MAX_SIZE = 1 << 16;
+
+    //[gameId] поддерево последнего хода бота (см. RootGameContext.ofBotMove())
+    private final Cache<Long, RootGameContext> previousTrees = CacheBuilder.newBuilder()
+            .maximumSize(PREVIOUS_TREES_MAX_SIZE)
+            .expireAfterWrite(PREVIOUS_TREES_TTL_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    //[ключ позиции] getMovesAfter()
+    private final Cache<Long, Integer> movesAfterCache = CacheBuilder.newBuilder()
+            .maximumSize(MOVES_AFTER_MAX_SIZE)
+            .build();
+
     @Override
-    protected void calculateRating(GameContext gameContext, int maxDeep) throws CheckmateException {
+    protected MoveDTO findBestMove(RootGameContext rootContext, AtomicBoolean cancelSignal) {
+        transpositionTable.newSearch();
+        long start = System.currentTimeMillis();
+
+        reusePreviousTree(rootContext);
+        rootContext.fill(MAX_DEEP, cancelSignal);
+
+        if (!rootContext.hasChildren()) {
+            throw new RuntimeException("Checkmate: Player win!");
+        }
+
+        log.info("totalMovesCount[before calculation]: " + rootContext.getTotalMovesCount());
+
+       GameContext resultContext;
+        try {
+            calculateRatingRecursive(rootContext, MAX_DEEP, cancelSignal);
+            rootContext.saveToTranspositionTable(transpositionTable);
+            resultContext = findBestExtendedMove(rootContext);
+        } catch (CheckmateException e) {
+            resultContext = e.getContext();
+        }
+        savePreviousTree(rootContext, resultContext);
+
+        log.info("totalMovesCount[after calculation]: " + rootContext.getTotalMovesCount());
+
+        MoveDTO predestinedMove = Debug.getPredestinedMove(rootContext.getMatrix().getPosition());
+        if (predestinedMove != null) {
+            return predestinedMove;
+        }
+
+        ExtendedMove resultMove = resultContext.getLastMove();
+
+
+        log.info("tree stats: " + rootContext.getStats());
+        if (log.isDebugEnabled()) {
+            log.debug("ResultMove[original_pos = " + rootContext.getMatrix().getPosition() + "]: " + resultMove + "\r\n"
+                    + resultContext.toDebugString(0, "ResultMove"));
+        }
+        long time = System.currentTimeMillis() - start;
+        log.info("findBestMove executed in : " + time + "ms");
+        recordNodesPerSecond(rootContext.getStats().getTotalNodes(), time);
+
+        return toMoveDTO(resultMove);
+    }
+
+    @Override
+    public void cancelBotMove(long gameId) {
+        super.cancelBotMove(gameId);
+        previousTrees.invalidate(gameId);
+    }
+
+    private void reusePreviousTree(RootGameContext rootContext) {
+        if (rootContext.getGameId() == null) {
+            return;
+        }
+
+        //забираем в любом случае: если это уже другая позиция (откат и т.п.), дерево больше не пригодится
+        RootGameContext previousTree = previousTrees.asMap().remove(rootContext.getGameId());
+        if (previousTree != null && rootContext.reuseTree(previousTree)) {
+            log.info("totalMovesCount[reused]: " + rootContext.getTotalMovesCount());
+        }
+    }
+
+    private void savePreviousTree(RootGameContext rootContext, GameContext resultContext) {
+        if (rootContext.getGameId() == null || resultContext.getParent() != rootContext) {
+            return;
+        }
+        //у игрока нет ответов (мат или пат) - партия окончена, следующего хода бота не будет
+        if (!resultContext.hasChildren()) {
+            previousTrees.invalidate(rootContext.getGameId());
+            return;
+        }
+        previousTrees.put(rootContext.getGameId(), RootGameContext.ofBotMove(rootContext, resultContext));
+    }
+
+    private void calculateRatingRecursive(GameContext context, int deep, AtomicBoolean cancelSignal) throws CheckmateException {
+        if (deep < 0) {
+            return;
+        }
+        if (cancelSignal.get()) {
+            throw new CancellationException("Rating calculation cancelled: position = " + context.getPosition());
+        }
+
+        if (!context.isRoot()) {
+            calculateRating(context, MAX_DEEP);
+        }
+        //у узла, оценка поддерева которого взята из таблицы транспозиций, рейтинги детей не нужны
+        if (context.hasChildren() && context.getCachedChildContextTotal() == null) {
+            if (context.isRoot()) {
+                //parallel stream, запущенный из задачи пула, выполняется в этом же пуле (а не в ForkJoinPool.commonPool())
+                searchPool.submit(() -> context.childrenStream()
+                        .parallel()
+                        .forEach(childContext -> calculateRatingRecursive(childContext, deep - 1, cancelSignal)))
+                        .join();
+            } else {
+                context.childrenStream()
+                        .forEach(childContext -> calculateRatingRecursive(childContext, deep - 1, cancelSignal));
+            }
+        }
+    }
+
+    private GameContext findBestExtendedMove(RootGameContext rootGameContext) {
+        List<GameContext> rootChildren = rootGameContext.childrenStream()
+                //FIXME: надо учитывать тоталы и более глубоких ходов
+                .sorted(Comparator.comparing(GameContext::getContextTotal))
+                .collect(Collectors.toList());
+
+        int max = rootChildren
+                .stream()
+                .mapToInt(GameContext::getContextTotal)
+                .max().orElseThrow(UnsupportedOperationException::new);
+
+        List<GameContext> topContextList = rootChildren
+                .stream()
+                .filter(context -> context.getContextTotal() == max)
+                .collect(Collectors.toList());
+
+        return getRandomContext(topContextList);
+    }
+
+    private GameContext getRandomContext(List<GameContext> contextList) {
+        int i = (int) (contextList.size() * Math.random());
+        return contextList.get(i);
+    }
+
+    private void calculateRating(GameContext gameContext, int maxDeep) throws CheckmateException {
         Preconditions.checkState(!gameContext.isRoot());
         Preconditions.checkState(gameContext.getDeep() <= maxDeep);
 
@@ -82,10 +245,7 @@ public class BotServiceImplMedium extends AbstractBotService {
                 //.filter(neighbor -> neighbor.getLastMove().getPieceFrom() != PieceType.KING)
                 .count() + 1);
 
-        int movesAfter = (int) MoveHelper.valueOf(context)
-                .getStandardMovesStream(context.nextTurnSide().reverse())
-                //.filter(move -> move.getPieceFrom() != PieceType.KING)
-                .count();
+        int movesAfter = getMovesAfter(context);
 
         Rating.Builder builder = Rating.builder()
                 .var("movesBefore", movesBefore)
@@ -97,6 +257,26 @@ public class BotServiceImplMedium extends AbstractBotService {
             return builder.build(RatingParam.AVAILABLE_MOVES_COUNT, movesAfter - movesBefore);
         }
     }
+
+    /**
+     * Количество ходов стороны, сделавшей lastMove, зависит только от позиции.
+     * Поэтому при транспозициях (Nf3/Nc6/Nc3 и Nc3/Nc6/Nf3) оно берется из movesAfterCache, а не генерируется заново.
+     */
+    private int getMovesAfter(GameContext context) {
+        long key = context.getKey();
+        Integer cachedMovesAfter = movesAfterCache.getIfPresent(key);
+        if (cachedMovesAfter != null) {
+            return cachedMovesAfter;
+        }
+
+        int movesAfter = (int) MoveHelper.valueOf(context)
+                .getStandardMovesStream(context.nextTurnSide().reverse())
+                //.filter(move -> move.getPieceFrom() != PieceType.KING)
+                .count();
+
+        movesAfterCache.put(key, movesAfter);
+        return movesAfter;
+    }
 }
 
 
@@ -0,0 +1,48 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.RatingParam;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.objects.IBitboardMatrix;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Статическая оценка позиции для AlphaBetaSearch. Использует те же составляющие (и те же коэффициенты RatingParam),
+ * что и рейтинг BotServiceImplMedium, но считает их по позиции, а не по дереву GameContext:
+ * - материал: PieceType.value * MATERIAL_FACTOR
+ * - подвижность (AVAILABLE_MOVES_COUNT): количество клеток под боем, не занятых своими фигурами
+ * - шах (CHECK)
+ * <p>
+ * Оценка всегда с точки зрения того, чей ход (negamax), а не с точки зрения бота.
+ */
+@UtilityClass
+public class Evaluator {
+
+    private static final PieceType[] MATERIAL_PIECE_TYPES = {PieceType.PAWN, PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN};
+
+    public static int evaluate(IBitboardMatrix board, Side nextTurnSide) {
+        int rating = getSideRating(board, nextTurnSide) - getSideRating(board, nextTurnSide.reverse());
+
+        if (board.isUnderCheck(nextTurnSide)) {
+            rating -= RatingParam.CHECK.getFactor();
+        }
+        return rating;
+    }
+
+    public static int getMaterial(IBitboardMatrix board, Side side) {
+        int material = 0;
+        for (PieceType pieceType : MATERIAL_PIECE_TYPES) {
+            material += Long.bitCount(board.getPieces(side, pieceType)) * getPieceValue(pieceType);
+        }
+        return material;
+    }
+
+    public static int getPieceValue(PieceType pieceType) {
+        return pieceType.getValue() * RatingParam.MATERIAL_SIMPLE_MOVE.getFactor();
+    }
+
+    private static int getSideRating(IBitboardMatrix board, Side side) {
+        int mobility = Long.bitCount(board.getAttackedSquares(side) & ~board.getPieces(side));
+        return getMaterial(board, side) + mobility * RatingParam.AVAILABLE_MOVES_COUNT.getFactor();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.enums.Side;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Перебор для BotServiceImplHard: однопоточный (AlphaBetaSearch) или параллельный (ParallelSearch).
+ * Экземпляр одноразовый: один поиск - один объект.
+ */
+public interface ISearch {
+
+    /**
+     * @param maxDepth    глубина, на которой итеративное углубление остановится, даже если время еще есть
+     * @param timeLimitMs бюджет времени на ход (AlphaBetaSearch.NO_TIME_LIMIT - без ограничения)
+     * @return оценка позиции для nextTurnSide. Лучший ход - getBestMove() (NO_MOVE если ходов нет)
+     */
+    int search(Side nextTurnSide, int maxDepth, long timeLimitMs);
+
+    /**
+     * Внешний сигнал остановки (отмена хода бота, см. BotMoveHandle): перебор сворачивается так же, как по дедлайну,
+     * в том числе на первой итерации - тогда getBestMove() == NO_MOVE
+     */
+    void setStopSignal(AtomicBoolean stopSignal);
+
+    /**
+     * Какие эвристики выборочного перебора включены (по умолчанию - все)
+     */
+    void setPruning(PruningSettings pruning);
+
+    int getBestMove();
+
+    int getCompletedDepth();
+
+    /**
+     * Все узлы перебора (всех потоков), включая quiescence
+     */
+    long getNodes();
+
+    /**
+     * Статистика перебора (всех потоков). Для многопоточного поиска - полная только после возврата из search()
+     */
+    SearchStats getStats();
+}
@@ -0,0 +1,175 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.enums.Side;
+import com.example.chess.logic.objects.BitboardMatrix;
+import com.example.chess.logic.objects.IMatrix;
+import com.example.chess.logic.objects.SearchBoard;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.game.IGame;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.chess.service.impl.bot.AlphaBetaSearch.NO_TIME_LIMIT;
+
+/**
+ * Lazy SMP: все потоки считают одну и ту же позицию обычным итеративным углублением (AlphaBetaSearch),
+ * никак не договариваясь между собой. Общая у них только таблица транспозиций: помощники заполняют ее оценками и лучшими ходами,
+ * и основной поток находит там уже посчитанные поддеревья.
+ * <p>
+ * Чтобы потоки не считали одно и то же в одном и том же порядке, нечетные помощники идут на полуход глубже (setDepthOffset()).
+ * Результат - всегда результат основного потока (он же отвечает за бюджет времени), помощники останавливаются вместе с ним.
+ * <p>
+ * В отличие от ParallelSearch (разделение ходов корня) не нужно ждать первый ход и нет простоя в конце итерации,
+ * но часть работы помощников дублируется.
+ * <p>
+ * Экземпляр одноразовый: один поиск - один объект.
+ */
+public class LazySmpSearch implements ISearch {
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final int helpersCount;
+    //неизменяемые копии корня, из которых потоки загружают свои доски
+    private final BitboardMatrix rootMatrix;
+    private final IGame rootGame;
+
+    //останавливает помощников, когда основной поток закончил
+    private final AtomicBoolean helpersStopSignal = new AtomicBoolean();
+    //статистика помощников: каждый добавляет свою, когда закончит
+    private final SearchStats helpersStats = new SearchStats();
+    private AtomicBoolean stopSignal;
+    private PruningSettings pruning = PruningSettings.ALL_ENABLED;
+    private AlphaBetaSearch mainSearch;
+
+    /**
+     * @param threadsCount всего потоков, включая основной (помощников - threadsCount - 1, они выполняются в pool)
+     */
+    public LazySmpSearch(IMatrix matrix, IGame game, TranspositionTable table, ForkJoinPool pool, int threadsCount) {
+        this.pool = pool;
+        this.table = table;
+        this.helpersCount = Math.max(threadsCount - 1, 0);
+        this.rootMatrix = BitboardMatrix.of(matrix);
+        this.rootGame = FakeGame.ofGame(game);
+    }
+
+    @Override
+    public int search(Side nextTurnSide, int maxDepth, long timeLimitMs) {
+        helpersStopSignal.set(false);
+
+        List<Helper> helpers = new ArrayList<>(helpersCount);
+        for (int i = 1; i <= helpersCount; i++) {
+            int depthOffset = i % 2;
+            AtomicBoolean isClaimed = new AtomicBoolean();
+            ForkJoinTask<?> task = pool.submit(() -> {
+                if (isClaimed.compareAndSet(false, true)) {
+                    runHelper(nextTurnSide, maxDepth, depthOffset);
+                }
+            });
+            helpers.add(new Helper(task, isClaimed));
+        }
+
+        mainSearch = new AlphaBetaSearch(SearchBoard.ofCurrentThread(rootMatrix, rootGame), table);
+        if (stopSignal != null) {
+            mainSearch.setStopSignal(stopSignal);
+        }
+        mainSearch.setPruning(pruning);
+
+        int score;
+        try {
+            score = mainSearch.search(nextTurnSide, maxDepth, timeLimitMs);
+        } finally {
+            //в том числе если основной поток упал: иначе помощники (без лимита времени) заняли бы потоки пула до maxDepth
+            stopHelpers(helpers);
+        }
+
+        //ошибка помощника - ошибка поиска (отмененные помощники не запускались, у них ошибок нет)
+        helpers.stream()
+                .filter(helper -> !helper.task.isCancelled())
+                .forEach(helper -> helper.task.join());
+        return score;
+    }
+
+    /**
+     * Помощник, который еще не начался (стоит в общем пуле за помощниками других партий), просто отменяется:
+     * иначе ход ждал бы его сверх своего бюджета. Запущенных дожидаемся, чтобы они не отнимали потоки пула у следующего поиска.
+     * <p>
+     * Начался помощник или нет - решает isClaimed, а не сам ForkJoinTask: cancel() помечает отмененной и уже запущенную задачу,
+     * и quietlyJoin() тогда не ждал бы ее
+     */
+    private void stopHelpers(List<Helper> helpers) {
+        helpersStopSignal.set(true);
+        for (Helper helper : helpers) {
+            if (helper.isClaimed.compareAndSet(false, true)) {
+                helper.task.cancel(false);
+            } else {
+                helper.task.quietlyJoin();
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Helper {
+
+        private final ForkJoinTask<?> task;
+        //true - задачу уже забрал либо поток пула (помощник считает), либо stopHelpers() (помощник не запустится)
+        private final AtomicBoolean isClaimed;
+    }
+
+    private void runHelper(Side nextTurnSide, int maxDepth, int depthOffset) {
+        AlphaBetaSearch helper = new AlphaBetaSearch(SearchBoard.ofCurrentThread(rootMatrix, rootGame), table);
+        helper.setStopSignal(helpersStopSignal);
+        helper.setDepthOffset(depthOffset);
+        helper.setPruning(pruning);
+
+        helper.search(nextTurnSide, maxDepth, NO_TIME_LIMIT);
+        synchronized (helpersStats) {
+            helpersStats.add(helper.getStats());
+        }
+    }
+
+    /**
+     * Останавливает основной поток, а он уже - помощников
+     */
+    @Override
+    public void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+    }
+
+    @Override
+    public void setPruning(PruningSettings pruning) {
+        this.pruning = pruning;
+    }
+
+    @Override
+    public int getBestMove() {
+        return mainSearch.getBestMove();
+    }
+
+    @Override
+    public int getCompletedDepth() {
+        return mainSearch.getCompletedDepth();
+    }
+
+    /**
+     * Узлы всех потоков (основного и помощников)
+     */
+    @Override
+    public long getNodes() {
+        return getStats().getTotalNodes();
+    }
+
+    @Override
+    public SearchStats getStats() {
+        SearchStats stats = new SearchStats();
+        stats.add(mainSearch.getStats());
+        synchronized (helpersStats) {
+            stats.add(helpersStats);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.PieceType;
+import com.example.chess.logic.bitboard.MoveList;
+import com.example.chess.logic.bitboard.PackedMove;
+import com.example.chess.logic.objects.SearchBoard;
+
+import static com.example.chess.logic.bitboard.Bitboards.piece;
+
+/**
+ * Порядок ходов для альфа-бета: чем раньше найден лучший ход, тем больше отсечений.
+ * <p>
+ * Приоритеты (по убыванию):
+ * - ход из таблицы транспозиций (лучший на прошлой итерации или в транспозиции)
+ * - взятия и превращения по MVV-LVA: сначала самая дорогая жертва, при равной жертве - самым дешевым нападающим
+ * - killer moves: тихие ходы, которые недавно дали отсечение на том же ply (в соседних ветках позиция похожая)
+ * - остальные тихие ходы по history: сколько отсечений ход (фигура + клетка) дал во всем переборе, с весом depth^2
+ * <p>
+ * Ходы не сортируются целиком: scoreMoves() только расставляет приоритеты, а selectNext() достает очередной лучший
+ * (сортировка выбором по шагу). После отсечения остаток списка так и остается несортированным.
+ * <p>
+ * killers и history - свои у каждого перебора (не потокобезопасно): один экземпляр на поток.
+ */
+public class MoveOrdering {
+
+    private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    //history всегда ниже killers: при переполнении вся таблица делится пополам
+    private static final int MAX_HISTORY = KILLER_SCORE - 1;
+
+    private static final int KILLERS_PER_PLY = 2;
+    private static final int SQUARES_COUNT = 64;
+
+    //[ply * KILLERS_PER_PLY + i], killers[ply * KILLERS_PER_PLY] - самый свежий. Пустые (NO_MOVE) ни с чем не совпадают
+    private final int[] killers = new int[(SearchBoard.MAX_PLY + 1) * KILLERS_PER_PLY];
+    //[pieceIndex * SQUARES_COUNT + to]
+    private final int[] history = new int[Piece.values().length * SQUARES_COUNT];
+
+    /**
+     * Приоритеты для всех ходов позиции на этом ply (результат - в moves.getScore())
+     */
+    public void scoreMoves(MoveList moves, int hashMove, int ply) {
+        int killer1 = killers[ply * KILLERS_PER_PLY];
+        int killer2 = killers[ply * KILLERS_PER_PLY + 1];
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+
+            if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (isTactical(move)) {
+                score = CAPTURE_SCORE + getCaptureOrder(move);
+            } else if (move == killer1) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killer2) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[getHistoryIndex(move)];
+            }
+            moves.setScore(i, score);
+        }
+    }
+
+    /**
+     * Тихий ход дал отсечение: он становится killer для этого ply и набирает history
+     */
+    public void onCutoff(int move, int depth, int ply) {
+        if (isTactical(move)) {
+            //взятия и так идут первыми
+            return;
+        }
+
+        int index = ply * KILLERS_PER_PLY;
+        if (killers[index] != move) {
+            killers[index + 1] = killers[index];
+            killers[index] = move;
+        }
+
+        int historyIndex = getHistoryIndex(move);
+        history[historyIndex] += depth * depth;
+        if (history[historyIndex] > MAX_HISTORY) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] /= 2;
+            }
+        }
+    }
+
+    /**
+     * Приоритеты для перебора взятий (quiescence): только MVV-LVA.
+     * Под шахом туда попадают и тихие ходы - они остаются после взятий.
+     */
+    public static void scoreCaptures(MoveList moves) {
+        for (int i = 0; i < moves.size(); i++) {
+            moves.setScore(i, getCaptureOrder(moves.get(i)));
+        }
+    }
+
+    /**
+     * Шаг сортировки выбором: ставит на место index ход с наибольшим приоритетом из оставшихся (index..size) и возвращает его
+     */
+    public static int selectNext(MoveList moves, int index) {
+        int bestIndex = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (moves.getScore(i) > moves.getScore(bestIndex)) {
+                bestIndex = i;
+            }
+        }
+        if (bestIndex != index) {
+            moves.swap(index, bestIndex);
+        }
+        return moves.get(index);
+    }
+
+    /**
+     * Полная сортировка (ходы корня в ParallelSearch): hashMove, затем взятия по MVV-LVA, затем тихие
+     */
+    public static void orderMoves(MoveList moves, int hashMove) {
+        new MoveOrdering().scoreMoves(moves, hashMove, 0);
+        for (int i = 0; i < moves.size(); i++) {
+            selectNext(moves, i);
+        }
+    }
+
+    /**
+     * Ход из таблицы, взятие или killer (см. scoreMoves()) - такие ходы LMR не сокращает
+     */
+    static boolean isKillerOrBetter(int score) {
+        return score >= KILLER_SCORE;
+    }
+
+    /**
+     * Взятие или превращение - меняет материал (см. AlphaBetaSearch.getMaterialGain())
+     */
+    static boolean isTactical(int move) {
+        return PackedMove.isCapture(move) || PackedMove.isPawnTransformation(move);
+    }
+
+    private static int getCaptureOrder(int move) {
+        return AlphaBetaSearch.getMaterialGain(move) * PieceType.values().length - piece(PackedMove.pieceIndex(move)).getType().ordinal();
+    }
+
+    private static int getHistoryIndex(int move) {
+        return PackedMove.pieceIndex(move) * SQUARES_COUNT + PackedMove.to(move);
+    }
+}
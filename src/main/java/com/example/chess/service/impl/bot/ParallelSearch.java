@@ -0,0 +1,212 @@
+package com.example.chess.service.impl.bot;
+
+import com.example.chess.enums.Side;
+import com.example.chess.logic.bitboard.MoveList;
+import com.example.chess.logic.objects.BitboardMatrix;
+import com.example.chess.logic.objects.IMatrix;
+import com.example.chess.logic.objects.SearchBoard;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.game.IGame;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.chess.logic.ChessConstants.CHECKMATE_VALUE;
+import static com.example.chess.logic.bitboard.PackedMove.NO_MOVE;
+import static com.example.chess.service.impl.bot.AlphaBetaSearch.INFINITY;
+import static com.example.chess.service.impl.bot.AlphaBetaSearch.MATE_THRESHOLD;
+import static com.example.chess.service.impl.bot.AlphaBetaSearch.NO_TIME_LIMIT;
+
+/**
+ * Параллельный перебор с разделением по ходам из корня (root splitting) на ForkJoinPool.
+ * <p>
+ * Итеративное углубление - как в AlphaBetaSearch, но каждая итерация считается так:
+ * - первый ход (лучший на прошлой итерации) - в текущем потоке с полным окном. Он почти всегда и есть лучший,
+ * а его оценка сразу дает хорошую alpha для остальных (young brothers wait: "младшие братья" ждут старшего)
+ * - остальные ходы корня раздаются пулу. У каждой задачи своя SearchBoard и свой AlphaBetaSearch,
+ * общие только таблица транспозиций (она lock-free) и alpha корня, которую задачи поднимают по мере нахождения лучших ходов
+ * <p>
+ * Оценка хода, посчитанная с alpha, которая была на момент старта задачи, и не поднявшаяся выше нее - только верхняя граница,
+ * поэтому лучшим может стать только ход с точной оценкой. Из ходов с точной оценкой при равенстве выигрывает тот, что раньше в списке.
+ * <p>
+ * Результат при этом НЕ детерминирован: задача берет alpha на момент своего старта. Если ход, который позже в списке,
+ * закончил раньше и поднял alpha, то более ранний ход с той же оценкой получит только верхнюю границу и выбыт
+ * (лучшим станет поздний). Кроме того, общая таблица транспозиций заполняется в разном порядке от запуска к запуску,
+ * и оценки (а значит и выбранный ход среди равных) могут отличаться. Оценка лучшего хода от этого не хуже.
+ * <p>
+ * Экземпляр одноразовый: один поиск - один объект.
+ */
+public class ParallelSearch implements ISearch {
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final SearchBoard rootBoard;
+    //неизменяемые копии корня, из которых задачи загружают свои доски
+    private final BitboardMatrix rootMatrix;
+    private final IGame rootGame;
+
+    //статистика задач: каждая добавляет свою, когда закончит (под блокировкой - это раз на ход корня, а не на узел)
+    @Getter
+    private final SearchStats stats = new SearchStats();
+    private final AtomicInteger rootAlpha = new AtomicInteger();
+    private final AtomicBoolean isIterationAborted = new AtomicBoolean();
+    //killers и history - на поток: задачи одного потока продолжают накапливать их от хода к ходу корня
+    private final ThreadLocal<MoveOrdering> orderings = ThreadLocal.withInitial(MoveOrdering::new);
+    private AtomicBoolean stopSignal;
+    private PruningSettings pruning = PruningSettings.ALL_ENABLED;
+
+    @Getter
+    private int bestMove = NO_MOVE;
+    @Getter
+    private int bestScore;
+    @Getter
+    private int completedDepth;
+
+    public ParallelSearch(IMatrix matrix, IGame game, TranspositionTable table, ForkJoinPool pool) {
+        this.pool = pool;
+        this.table = table;
+        this.rootBoard = SearchBoard.of(matrix, game);
+        this.rootMatrix = rootBoard.snapshot();
+        this.rootGame = FakeGame.ofGame(game);
+    }
+
+    @Override
+    public void setStopSignal(AtomicBoolean stopSignal) {
+        this.stopSignal = stopSignal;
+    }
+
+    @Override
+    public void setPruning(PruningSettings pruning) {
+        this.pruning = pruning;
+    }
+
+    @Override
+    public long getNodes() {
+        synchronized (stats) {
+            return stats.getTotalNodes();
+        }
+    }
+
+    @Override
+    public int search(Side nextTurnSide, int maxDepth, long timeLimitMs) {
+        long start = System.nanoTime();
+        long timeLimit = timeLimitMs == NO_TIME_LIMIT ? 0 : TimeUnit.MILLISECONDS.toNanos(timeLimitMs);
+        long deadline = start + timeLimit;
+        boolean hasDeadline = false;
+
+        bestMove = NO_MOVE;
+        completedDepth = 0;
+
+        int[] rootMoves = getRootMoves(nextTurnSide);
+        if (rootMoves.length == 0) {
+            bestScore = rootBoard.isUnderCheck(nextTurnSide) ? -CHECKMATE_VALUE : 0;
+            return bestScore;
+        }
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int[] scores = searchIteration(nextTurnSide, rootMoves, depth, hasDeadline ? deadline : NO_TIME_LIMIT);
+            if (isIterationAborted.get()) {
+                break;
+            }
+
+            int bestIndex = 0;
+            for (int i = 1; i < rootMoves.length; i++) {
+                if (scores[i] > scores[bestIndex]) {
+                    bestIndex = i;
+                }
+            }
+            bestMove = rootMoves[bestIndex];
+            bestScore = scores[bestIndex];
+            completedDepth = depth;
+            table.store(rootBoard.getKey(), depth, bestScore, TranspositionTable.EXACT, bestMove);
+
+            //следующая итерация начинается с лучшего хода этой
+            System.arraycopy(rootMoves, 0, rootMoves, 1, bestIndex);
+            rootMoves[0] = bestMove;
+
+            hasDeadline = timeLimitMs != NO_TIME_LIMIT;
+
+            if (Math.abs(bestScore) > MATE_THRESHOLD) {
+                break;
+            }
+            if (hasDeadline && System.nanoTime() - start > timeLimit / 2) {
+                break;
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * @return оценки ходов корня. Для ходов, которые не смогли подняться выше alpha - -INFINITY (точной оценки у них нет)
+     */
+    private int[] searchIteration(Side side, int[] rootMoves, int depth, long deadline) {
+        isIterationAborted.set(false);
+        int[] scores = new int[rootMoves.length];
+
+        scores[0] = searchRootMove(side, rootMoves[0], depth, -INFINITY, deadline);
+        if (isIterationAborted.get()) {
+            return scores;
+        }
+        rootAlpha.set(scores[0]);
+
+        List<Callable<Void>> tasks = new ArrayList<>(rootMoves.length - 1);
+        for (int i = 1; i < rootMoves.length; i++) {
+            int index = i;
+            tasks.add(() -> {
+                if (isIterationAborted.get()) {
+                    //итерация все равно будет выброшена
+                    return null;
+                }
+                int alpha = rootAlpha.get();
+                int score = searchRootMove(side, rootMoves[index], depth, alpha, deadline);
+
+                if (score > alpha) {
+                    scores[index] = score;
+                    rootAlpha.accumulateAndGet(score, Math::max);
+                } else {
+                    scores[index] = -INFINITY;
+                }
+                return null;
+            });
+        }
+        //invokeAll дожидается всех задач, так что scores после него полностью заполнен
+        pool.invokeAll(tasks);
+
+        return scores;
+    }
+
+    private int searchRootMove(Side side, int move, int depth, int alpha, long deadline) {
+        //задача ничего не ждет внутри себя, поэтому доска потока не может понадобиться кому-то еще, пока она считает
+        SearchBoard board = SearchBoard.ofCurrentThread(rootMatrix, rootGame);
+        AlphaBetaSearch search = new AlphaBetaSearch(board, table, orderings.get());
+        search.setPruning(pruning);
+        if (deadline != NO_TIME_LIMIT) {
+            search.setDeadline(deadline);
+        }
+        if (stopSignal != null) {
+            search.setStopSignal(stopSignal);
+        }
+
+        int score = search.searchRootMove(side, move, depth, alpha, INFINITY);
+        synchronized (stats) {
+            stats.add(search.getStats());
+        }
+        if (search.isAborted()) {
+            isIterationAborted.set(true);
+        }
+        return score;
+    }
+
+    private int[] getRootMoves(Side side) {
+        long entry = table.probe(rootBoard.getKey());
+        MoveList moves = rootBoard.generateMoves(side);
+        MoveOrdering.orderMoves(moves, TranspositionTable.getMove(entry));
+        return moves.stream().toArray();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.chess.service.impl.bot;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Выборочный перебор в AlphaBetaSearch: null move, late move reductions и futility pruning.
+ * Каждую эвристику можно выключить (app.game.bot.search.*), чтобы сравнивать замеры с ней и без нее.
+ */
+@Getter
+@AllArgsConstructor
+public class PruningSettings {
+
+    public static final PruningSettings ALL_ENABLED = new PruningSettings(true, true, true);
+    public static final PruningSettings ALL_DISABLED = new PruningSettings(false, false, false);
+
+    private final boolean isNullMoveEnabled;
+    private final boolean isLateMoveReductionEnabled;
+    private final boolean isFutilityPruningEnabled;
+
+    @Override
+    public String toString() {
+        return "nullMove = " + isNullMoveEnabled + ", lmr = " + isLateMoveReductionEnabled + ", futility = " + isFutilityPruningEnabled;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.chess.service.impl.bot;
+
+import lombok.Getter;
+
+/**
+ * Статистика одного перебора: узлы (обычные и quiescence), обращения к таблице транспозиций, отсечения по beta,
+ * вызовы генератора ходов.
+ * <p>
+ * Счетчики - обычные long, а не AtomicLong: экземпляр пишет только один поток (свой у каждого AlphaBetaSearch),
+ * так что ни атомарных операций, ни общей для всех потоков кэш-линии. Многопоточные поиски в конце складывают
+ * статистику своих потоков через add(). И у каждого поиска она своя - поиск в одной партии не обнуляет счетчики другой.
+ * <p>
+ * Узлы считаются всегда (по ним проверяется дедлайн и считается nps). Остальное - только если IS_ENABLED
+ * (-Dapp.search-stats=false выключает): это static final, так что выключенный счетчик JIT выбрасывает целиком.
+ */
+@Getter
+public class SearchStats {
+
+    public static final boolean IS_ENABLED = Boolean.parseBoolean(System.getProperty("app.search-stats", "true"));
+
+    private long nodes;
+    private long quiescenceNodes;
+    private long ttProbes;
+    private long ttHits;
+    private long cutoffs;
+    private long moveGenerations;
+
+    public void onNode() {
+        nodes++;
+    }
+
+    public void onQuiescenceNode() {
+        quiescenceNodes++;
+    }
+
+    public void onTtProbe(boolean isHit) {
+        if (IS_ENABLED) {
+            ttProbes++;
+            if (isHit) {
+                ttHits++;
+            }
+        }
+    }
+
+    public void onCutoff() {
+        if (IS_ENABLED) {
+            cutoffs++;
+        }
+    }
+
+    public void onMoveGeneration() {
+        if (IS_ENABLED) {
+            moveGenerations++;
+        }
+    }
+
+    /**
+     * Все узлы, включая quiescence
+     */
+    public long getTotalNodes() {
+        return nodes + quiescenceNodes;
+    }
+
+    /**
+     * Добавляет статистику другого потока. Не потокобезопасно: вызывать, когда тот поток уже закончил,
+     * и не из нескольких потоков сразу
+     */
+    public void add(SearchStats other) {
+        nodes += other.nodes;
+        quiescenceNodes += other.quiescenceNodes;
+        ttProbes += other.ttProbes;
+        ttHits += other.ttHits;
+        cutoffs += other.cutoffs;
+        moveGenerations += other.moveGenerations;
+    }
+
+    @Override
+    public String toString() {
+        String result = "nodes = " + getTotalNodes() + " (quiescence = " + quiescenceNodes + ")";
+        if (!IS_ENABLED) {
+            return result;
+        }
+        return result + ", ttProbes = " + ttProbes + ", ttHits = " + ttHits + " (" + getPercent(ttHits, ttProbes) + "%)"
+                + ", cutoffs = " + cutoffs + ", moveGenerations = " + moveGenerations;
+    }
+
+    private static long getPercent(long value, long total) {
+        return total == 0 ? 0 : value * 100 / total;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.chess.service.impl.bot;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Таблица транспозиций: кэш оценок позиций фиксированного размера по Zobrist-ключу (см. Zobrist).
+ * <p>
+ * Каждая корзина (bucket) - два слота:
+ * - depth-preferred: вытесняется только записью с не меньшей глубиной (или записью из более нового поиска)
+ * - always-replace: перезаписывается всегда
+ * <p>
+ * Блокировок нет: запись хранится как пара long-ов (key ^ data, data). Если два потока пишут в один слот одновременно,
+ * то "порванная" пара просто не пройдет проверку ключа при чтении и будет считаться промахом.
+ * <p>
+ * Запись (data) упакована в long, чтобы probe() ничего не аллоцировал:
+ * <pre>
+ * биты  0-25  лучший ход (PackedMove) или PackedMove.NO_MOVE
+ * биты 26-49  оценка (со знаком)
+ * биты 50-56  глубина
+ * биты 57-58  тип оценки (EXACT/LOWER_BOUND/UPPER_BOUND), никогда не 0 - поэтому data == 0 значит пустой слот
+ * биты 59-63  поколение (номер поиска по модулю 32), см. newSearch()
+ * </pre>
+ */
+@SuppressWarnings("WeakerAccess")
+public class TranspositionTable {
+
+    public static final long NO_ENTRY = 0;
+
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;    //оценка >= score (было отсечение по beta)
+    public static final int UPPER_BOUND = 3;    //оценка <= score (ни один ход не поднял alpha)
+
+    public static final int MAX_DEPTH = 127;
+    public static final int MAX_SCORE = (1 << 23) - 1;
+
+    private static final int SLOTS_PER_BUCKET = 2;
+    private static final int LONGS_PER_SLOT = 2;
+    private static final int BUCKET_BYTES = SLOTS_PER_BUCKET * LONGS_PER_SLOT * Long.BYTES;
+
+    private static final int MOVE_BITS = 26;
+    private static final int SCORE_BITS = 24;
+    private static final int DEPTH_BITS = 7;
+    private static final int BOUND_BITS = 2;
+    private static final int GENERATION_BITS = 5;
+
+    private static final int SCORE_SHIFT = MOVE_BITS;
+    private static final int DEPTH_SHIFT = SCORE_SHIFT + SCORE_BITS;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int GENERATION_SHIFT = BOUND_SHIFT + BOUND_BITS;
+
+    private static final long MOVE_MASK = (1L << MOVE_BITS) - 1;
+    private static final long SCORE_MASK = (1L << SCORE_BITS) - 1;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    private static final long BOUND_MASK = (1L << BOUND_BITS) - 1;
+    private static final long GENERATION_MASK = (1L << GENERATION_BITS) - 1;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int generation;
+
+    /**
+     * @param sizeMb размер таблицы в мегабайтах, округляется вниз до степени двойки корзин
+     */
+    public TranspositionTable(int sizeMb) {
+        Preconditions.checkArgument(sizeMb > 0, "Transposition table size must be positive");
+
+        int bucketsCount = Integer.highestOneBit((int) Math.min((long) sizeMb * 1024 * 1024 / BUCKET_BYTES, 1 << 26));
+        this.table = new long[bucketsCount * SLOTS_PER_BUCKET * LONGS_PER_SLOT];
+        this.bucketMask = bucketsCount - 1;
+    }
+
+    /**
+     * @return упакованная запись (см. getScore(), getDepth(), getBound(), getMove()) или NO_ENTRY
+     */
+    public long probe(long key) {
+        int index = getBucketIndex(key);
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++, index += LONGS_PER_SLOT) {
+            long data = table[index + 1];
+            if (data != NO_ENTRY && (table[index] ^ data) == key) {
+                return data;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    public void store(long key, int depth, int score, int bound, int move) {
+        Preconditions.checkArgument(bound >= EXACT && bound <= UPPER_BOUND, "Unknown bound type: " + bound);
+
+        int currentGeneration = generation;
+        long data = (move & MOVE_MASK)
+                | (Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score)) & SCORE_MASK) << SCORE_SHIFT
+                | (Math.min(depth, MAX_DEPTH) & DEPTH_MASK) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (currentGeneration & GENERATION_MASK) << GENERATION_SHIFT;
+
+        int index = getBucketIndex(key);
+        long preferredData = table[index + 1];
+        boolean isSameKey = (table[index] ^ preferredData) == key;
+
+        if (preferredData == NO_ENTRY
+                || isSameKey
+                || getGeneration(preferredData) != (currentGeneration & GENERATION_MASK)
+                || depth >= getDepth(preferredData)) {
+
+            if (!isSameKey && preferredData != NO_ENTRY) {
+                //вытесненная запись еще может пригодиться - переезжает в always-replace слот
+                table[index + LONGS_PER_SLOT] = table[index];
+                table[index + LONGS_PER_SLOT + 1] = preferredData;
+            }
+            table[index] = key ^ data;
+            table[index + 1] = data;
+        } else {
+            index += LONGS_PER_SLOT;
+            table[index] = key ^ data;
+            table[index + 1] = data;
+        }
+    }
+
+    /**
+     * Вызывается перед каждым новым поиском: записи прошлых поисков остаются доступны для probe(),
+     * но больше не защищены глубиной от вытеснения
+     */
+    public void newSearch() {
+        generation++;
+    }
+
+    public void clear() {
+        Arrays.fill(table, NO_ENTRY);
+    }
+
+    public static int getMove(long entry) {
+        return (int) (entry & MOVE_MASK);
+    }
+
+    public static int getScore(long entry) {
+        //сдвигаем влево до упора и обратно, чтобы восстановить знак
+        return (int) (entry << (Long.SIZE - DEPTH_SHIFT) >> (Long.SIZE - SCORE_BITS));
+    }
+
+    public static int getDepth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & DEPTH_MASK);
+    }
+
+    public static int getBound(long entry) {
+        return (int) ((entry >>> BOUND_SHIFT) & BOUND_MASK);
+    }
+
+    private static int getGeneration(long entry) {
+        return (int) ((entry >>> GENERATION_SHIFT) & GENERATION_MASK);
+    }
+
+    private int getBucketIndex(long key) {
+        //младшие биты ключа - номер корзины
+        return ((int) key & bucketMask) * SLOTS_PER_BUCKET * LONGS_PER_SLOT;
+    }
+
+    /**
+     * Пригодна ли запись для того, чтобы не считать узел заново: глубина не меньше требуемой и оценка точная
+     */
+    public static boolean isExact(long entry, int depth) {
+        return entry != NO_ENTRY && getBound(entry) == EXACT && getDepth(entry) >= depth;
+    }
+}
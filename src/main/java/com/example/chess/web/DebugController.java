@@ -7,11 +7,13 @@ import com.example.chess.entity.Game;
 import com.example.chess.entity.History;
 import com.example.chess.enums.GameMode;
 import com.example.chess.enums.Side;
+import com.example.chess.exceptions.BotBusyException;
 import com.example.chess.exceptions.GameNotFoundException;
 import com.example.chess.logic.objects.CellsMatrix;
 import com.example.chess.logic.objects.move.ExtendedMove;
 import com.example.chess.repository.GameRepository;
 import com.example.chess.repository.HistoryRepository;
+import com.example.chess.repository.PositionSnapshotRepository;
 import com.example.chess.service.BotService;
 import com.example.chess.service.GameService;
 import com.google.common.base.Preconditions;
@@ -37,21 +39,26 @@ public class DebugController {
     private final BotService botService;
     private final GameRepository gameRepository;
     private final HistoryRepository historyRepository;
+    private final PositionSnapshotRepository snapshotRepository;
 
     @Autowired
-    public DebugController(GameService gameService, BotService botService, GameRepository gameRepository, HistoryRepository historyRepository) {
+    public DebugController(GameService gameService, BotService botService, GameRepository gameRepository,
+                           HistoryRepository historyRepository, PositionSnapshotRepository snapshotRepository) {
         this.gameService = gameService;
         this.botService = botService;
         this.gameRepository = gameRepository;
         this.historyRepository = historyRepository;
+        this.snapshotRepository = snapshotRepository;
     }
 
     @GetMapping("/{gameId}/reset")
     public String[] resetGame(@PathVariable("gameId") long gameId) throws GameNotFoundException {
         Game game = gameService.findAndCheckGame(gameId);
+        botService.cancelBotMove(gameId);
         game.reset();
 
         historyRepository.deleteAll(findAllGameHistory(gameId));
+        snapshotRepository.deleteFromPosition(gameId, 0);
         gameRepository.save(game);
 
         return getHistory(gameId);
@@ -94,11 +101,12 @@ public class DebugController {
     public ArrangementDTO rollbackLastMove(@PathVariable("gameId") long gameId) throws GameNotFoundException {
 
         Game game = gameService.findAndCheckGame(gameId);
+        botService.cancelBotMove(gameId);
         return gameService.rollbackLastMove(game);
     }
 
     @GetMapping("/{gameId}/wake")
-    public void wakeBot(@PathVariable("gameId") long gameId) throws GameNotFoundException {
+    public void wakeBot(@PathVariable("gameId") long gameId) throws GameNotFoundException, BotBusyException {
         Game game = gameService.findAndCheckGame(gameId);
 
         Preconditions.checkState(game.getMode() == GameMode.AI, "You should to use AI_MODE!");
@@ -119,7 +127,7 @@ public class DebugController {
     }
 
     @GetMapping("/{gameId}/rollbackAndWake")
-    public ImmutableMap<String, String[]> rollbackAndWake(@PathVariable("gameId") long gameId) throws GameNotFoundException, InterruptedException {
+    public ImmutableMap<String, String[]> rollbackAndWake(@PathVariable("gameId") long gameId) throws GameNotFoundException, BotBusyException, InterruptedException {
         String[] oldHistory = getHistory(gameId);
         int expectedMovesCount = getHistory(gameId).length;
         rollbackLastMove(gameId);
@@ -5,11 +5,10 @@ import com.example.chess.dto.MoveDTO;
 import com.example.chess.dto.PointDTO;
 import com.example.chess.entity.Game;
 import com.example.chess.enums.GameMode;
+import com.example.chess.exceptions.BotBusyException;
 import com.example.chess.exceptions.GameNotFoundException;
-import com.example.chess.logic.objects.CellsMatrix;
 import com.example.chess.service.BotService;
 import com.example.chess.service.GameService;
-import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Set;
@@ -36,15 +35,13 @@ public class GameController {
 
     @PostMapping("/{gameId}/move")
     public ArrangementDTO applyMove(@PathVariable("gameId") long gameId,
-                                    @RequestBody MoveDTO move) throws GameNotFoundException {
+                                    @RequestBody MoveDTO move) throws GameNotFoundException, BotBusyException {
 
         Game game = gameService.findAndCheckGame(gameId);
-        Pair<CellsMatrix, ArrangementDTO> pair = gameService.applyMove(game, move);
-
         if (game.getMode() == GameMode.AI) {
-            botService.applyBotMove(game, move.toExtendedMove(pair.getKey()));
+            return botService.applyPlayerMove(game, move);
         }
-        return pair.getValue();
+        return gameService.applyMove(game, move).getValue();
     }
 
     @GetMapping("/{gameId}/listen")
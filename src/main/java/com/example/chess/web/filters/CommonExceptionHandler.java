@@ -1,5 +1,6 @@
 package com.example.chess.web.filters;
 
+import com.example.chess.exceptions.BotBusyException;
 import com.example.chess.logic.utils.CustomResponse;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import lombok.extern.log4j.Log4j2;
@@ -13,6 +14,9 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 public class CommonExceptionHandler {
 
+    //через сколько секунд клиенту повторять запрос, если очередь ходов бота заполнена
+    private static final int BOT_BUSY_RETRY_AFTER_SECONDS = 1;
+
     @ResponseBody
     @ExceptionHandler(JsonMappingException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -20,4 +24,10 @@ public class CommonExceptionHandler {
         log.error(ex.getMessage(), ex);
         return CustomResponse.internalServerError(ex.getMessage());
     }
+
+    @ExceptionHandler(BotBusyException.class)
+    public CustomResponse botBusy(BotBusyException ex) {
+        log.warn(ex.getMessage());
+        return CustomResponse.serviceUnavailable(ex.getMessage(), BOT_BUSY_RETRY_AFTER_SECONDS);
+    }
 }
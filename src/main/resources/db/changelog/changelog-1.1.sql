@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset Magic:2
+create table if not exists position_snapshot
+(
+	id bigint not null
+		constraint position_snapshot_pkey
+			primary key,
+	game_id bigint not null,
+	position integer not null,
+	arrangement varchar(64) not null,
+	constraint position_snapshot_game_id_position_key
+		unique (game_id, position)
+);
+alter table position_snapshot owner to postgres;
+create sequence position_snapshot_id_seq;
+alter sequence position_snapshot_id_seq owner to postgres;
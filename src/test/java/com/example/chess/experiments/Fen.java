@@ -0,0 +1,98 @@
+package com.example.chess.experiments;
+
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.game.IGame;
+import com.example.chess.logic.utils.CommonUtils;
+
+/**
+ * Разбор позиций в нотации FEN для тестов (PerftTests, StaticExchangeTests).
+ * Поддерживаются все поля, кроме счетчика полуходов (правило 50 ходов в игре не проверяется)
+ */
+public final class Fen {
+
+    private Fen() {
+    }
+
+    public static Side getNextTurnSide(String fen) {
+        return "w".equals(fen.split(" ")[1]) ? Side.WHITE : Side.BLACK;
+    }
+
+    /**
+     * Расстановка и очередь хода (по четности position)
+     */
+    public static CellsMatrix parseMatrix(String fen) {
+        String[] fields = fen.split(" ");
+        Piece[][] pieces = new Piece[8][8];
+        String[] ranks = fields[0].split("/");
+
+        for (int i = 0; i < ranks.length; i++) {
+            int rowIndex = 7 - i;
+            int file = 0;
+
+            for (char c : ranks[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    file += c - '0';
+                } else {
+                    int columnIndex = CommonUtils.nameToColumnIndex(String.valueOf((char) ('a' + file)));
+                    pieces[rowIndex][columnIndex] = parsePiece(c);
+                    file++;
+                }
+            }
+        }
+
+        int fullMoveNumber = Integer.parseInt(fields[5]);
+        int position = (fullMoveNumber - 1) * 2 + ("w".equals(fields[1]) ? 0 : 1);
+        return CellsMatrix.ofArrangement(position, (rowIndex, columnIndex) -> pieces[rowIndex][columnIndex]);
+    }
+
+    /**
+     * Рокировки и взятие на проходе. В IGame взятие на проходе хранится как вертикаль длинного хода пешки той стороны,
+     * которая его сделала (т.е. не той, чей сейчас ход)
+     */
+    public static IGame parseGame(String fen) {
+        String[] fields = fen.split(" ");
+        String castling = fields[2];
+        Side lastMoveSide = "w".equals(fields[1]) ? Side.BLACK : Side.WHITE;
+        Integer pawnLongMoveColumnIndex = "-".equals(fields[3]) ? null : CommonUtils.nameToColumnIndex(fields[3].substring(0, 1));
+
+        return new IGame() {
+            @Override
+            public boolean isShortCastlingAvailable(Side side) {
+                return castling.indexOf(side == Side.WHITE ? 'K' : 'k') >= 0;
+            }
+
+            @Override
+            public boolean isLongCastlingAvailable(Side side) {
+                return castling.indexOf(side == Side.WHITE ? 'Q' : 'q') >= 0;
+            }
+
+            @Override
+            public Integer getPawnLongMoveColumnIndex(Side side) {
+                return side == lastMoveSide ? pawnLongMoveColumnIndex : null;
+            }
+        };
+    }
+
+    private static Piece parsePiece(char c) {
+        Side side = Character.isUpperCase(c) ? Side.WHITE : Side.BLACK;
+        switch (Character.toLowerCase(c)) {
+            case 'p':
+                return Piece.of(side, PieceType.PAWN);
+            case 'n':
+                return Piece.of(side, PieceType.KNIGHT);
+            case 'b':
+                return Piece.of(side, PieceType.BISHOP);
+            case 'r':
+                return Piece.of(side, PieceType.ROOK);
+            case 'q':
+                return Piece.of(side, PieceType.QUEEN);
+            case 'k':
+                return Piece.of(side, PieceType.KING);
+            default:
+                throw new IllegalArgumentException("Unknown piece: " + c);
+        }
+    }
+}
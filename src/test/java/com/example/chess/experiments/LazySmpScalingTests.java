@@ -0,0 +1,100 @@
+package com.example.chess.experiments;
+
+import com.example.chess.enums.Side;
+import com.example.chess.logic.bitboard.MoveList;
+import com.example.chess.logic.bitboard.PackedMove;
+import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.SearchBoard;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.game.IGame;
+import com.example.chess.service.impl.bot.AlphaBetaSearch;
+import com.example.chess.service.impl.bot.LazySmpSearch;
+import com.example.chess.service.impl.bot.TranspositionTable;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Масштабирование Lazy SMP по количеству потоков: nodes/sec и время до глубины для 1..N потоков.
+ * Нужно, чтобы подобрать app.game.bot.threads под конкретный сервер.
+ * <p>
+ * N = -DlazySmp.threads (по умолчанию - количество ядер), глубина = -DlazySmp.depth
+ */
+public class LazySmpScalingTests {
+
+    private static final int MAX_THREADS = Integer.getInteger("lazySmp.threads", Runtime.getRuntime().availableProcessors());
+    private static final int DEPTH = Integer.getInteger("lazySmp.depth", 5);
+    private static final int TT_SIZE_MB = 16;
+
+    private static final IGame START_GAME = new IGame() {
+        @Override
+        public boolean isShortCastlingAvailable(Side side) {
+            return true;
+        }
+
+        @Override
+        public boolean isLongCastlingAvailable(Side side) {
+            return true;
+        }
+
+        @Override
+        public Integer getPawnLongMoveColumnIndex(Side side) {
+            return null;
+        }
+    };
+
+    @Test
+    public void scaling() {
+        SearchBoard startPosition = SearchBoard.of(CellsMatrix.ofHistory(0, Collections.emptyList()), START_GAME);
+        SearchBoard middlegame = playRandomMoves(SearchBoard.of(CellsMatrix.ofHistory(0, Collections.emptyList()), START_GAME), 16);
+
+        //прогрев JIT, иначе первый замер (1 поток) будет заметно медленнее остальных
+        search(startPosition, 1);
+
+        System.out.println("threads\tdepth\ttime(ms)\tnodes\tnps\tspeedup");
+        for (SearchBoard board : new SearchBoard[]{startPosition, middlegame}) {
+            long singleThreadTime = 0;
+
+            for (int threads = 1; threads <= MAX_THREADS; threads++) {
+                long start = System.nanoTime();
+                LazySmpSearch search = search(board, threads);
+                long time = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+
+                if (threads == 1) {
+                    singleThreadTime = time;
+                }
+                System.out.println(threads + "\t" + search.getCompletedDepth() + "\t" + time + "\t" + search.getNodes()
+                        + "\t" + search.getNodes() * 1000 / time + "\t" + String.format("%.2f", (double) singleThreadTime / time));
+
+                assertTrue(search.getCompletedDepth() >= DEPTH);
+                assertNotEquals(PackedMove.NO_MOVE, search.getBestMove());
+            }
+            System.out.println();
+        }
+    }
+
+    private static LazySmpSearch search(SearchBoard board, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        LazySmpSearch search = new LazySmpSearch(board.snapshot(), FakeGame.ofGame(board), new TranspositionTable(TT_SIZE_MB), pool, threads);
+
+        search.search(Side.getNextTurnSideByPosition(board.getPosition()), DEPTH, AlphaBetaSearch.NO_TIME_LIMIT);
+        pool.shutdown();
+        return search;
+    }
+
+    private static SearchBoard playRandomMoves(SearchBoard board, int count) {
+        Random random = new Random(count);
+        Side side = Side.WHITE;
+        for (int i = 0; i < count; i++) {
+            MoveList moves = board.generateMoves(side);
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+            side = side.reverse();
+        }
+        return board;
+    }
+}
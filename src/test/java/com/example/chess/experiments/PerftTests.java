@@ -0,0 +1,97 @@
+package com.example.chess.experiments;
+
+import com.example.chess.enums.MoveGenerationStrategy;
+import com.example.chess.enums.Piece;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.MoveHelper;
+import com.example.chess.logic.objects.IMatrix;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.move.ExtendedMove;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Perft: количество листьев полного дерева легальных ходов на глубину N.
+ * Сверяется с эталонными значениями (https://www.chessprogramming.org/Perft_Results) - любая ошибка генератора
+ * (рокировка, взятие на проходе, превращение, связка, шах) меняет число. Заодно печатает nodes/sec для каждой стратегии
+ * MoveHelper, чтобы сравнивать оптимизации генератора.
+ * <p>
+ * Ходы - MoveHelper.getStandardMovesStream(), позиции - CellsMatrix.executeMove() + FakeGame.executeMove(),
+ * т.е. ровно то, чем пользуется GameContext.
+ * <p>
+ * Глубина = -Dperft.depth (по умолчанию 3, но не больше известных эталонов), стратегия = -Dperft.strategy (по умолчанию - все)
+ */
+public class PerftTests {
+
+    private static final int MAX_DEPTH = Integer.getInteger("perft.depth", 3);
+    private static final String STRATEGY = System.getProperty("perft.strategy");
+
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    //FEN и эталонные perft(1), perft(2), ...
+    private static final Object[][] POSITIONS = {
+            {START_FEN, new long[]{20, 400, 8902, 197281, 4865609}},
+            //kiwipete: рокировки, связки, взятия на проходе
+            {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", new long[]{48, 2039, 97862, 4085603}},
+            //эндшпиль: взятие на проходе со вскрытием шаха
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", new long[]{14, 191, 2812, 43238, 674624}},
+            //превращения со взятием, рокировка под боем
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", new long[]{6, 264, 9467, 422333}},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", new long[]{44, 1486, 62379, 2103487}},
+            {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", new long[]{46, 2079, 89890, 3894594}}
+    };
+
+    @Test
+    public void perft() {
+        for (MoveGenerationStrategy strategy : MoveGenerationStrategy.values()) {
+            if (STRATEGY != null && !STRATEGY.equalsIgnoreCase(strategy.name())) {
+                continue;
+            }
+
+            //прогрев JIT, иначе первая позиция будет заметно медленнее остальных
+            perft(START_FEN, 3, strategy);
+
+            System.out.println(strategy + ":");
+            System.out.println("depth\tnodes\ttime(ms)\tnps\tfen");
+            for (Object[] position : POSITIONS) {
+                String fen = (String) position[0];
+                long[] expectedNodes = (long[]) position[1];
+
+                for (int depth = 1; depth <= Math.min(MAX_DEPTH, expectedNodes.length); depth++) {
+                    long start = System.nanoTime();
+                    long nodes = perft(fen, depth, strategy);
+                    long time = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+
+                    System.out.println(depth + "\t" + nodes + "\t" + time + "\t" + nodes * 1000 / time + "\t" + fen);
+                    assertEquals(strategy + ": " + fen + ", depth = " + depth, expectedNodes[depth - 1], nodes);
+                }
+            }
+            System.out.println();
+        }
+    }
+
+    private static long perft(String fen, int depth, MoveGenerationStrategy strategy) {
+        return perft(Fen.parseMatrix(fen), FakeGame.ofGame(Fen.parseGame(fen)), Fen.getNextTurnSide(fen), depth, strategy);
+    }
+
+    private static long perft(IMatrix matrix, FakeGame game, Side side, int depth, MoveGenerationStrategy strategy) {
+        List<ExtendedMove> moves = MoveHelper.valueOf(game, matrix, strategy)
+                .getStandardMovesStream(side)
+                .collect(Collectors.toList());
+
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (ExtendedMove move : moves) {
+            Piece pieceFrom = move.getFrom().getPiece();
+            nodes += perft(matrix.executeMove(move), game.executeMove(move, pieceFrom), side.reverse(), depth - 1, strategy);
+        }
+        return nodes;
+    }
+}
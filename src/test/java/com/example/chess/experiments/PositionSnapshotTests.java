@@ -0,0 +1,89 @@
+package com.example.chess.experiments;
+
+import com.example.chess.dto.MoveDTO;
+import com.example.chess.entity.Game;
+import com.example.chess.entity.History;
+import com.example.chess.entity.PositionSnapshot;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.MoveHelper;
+import com.example.chess.logic.objects.CellsMatrix;
+import com.example.chess.logic.objects.game.FakeGame;
+import com.example.chess.logic.objects.move.ExtendedMove;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static com.example.chess.logic.ChessConstants.BOARD_SIZE;
+import static com.example.chess.service.impl.GameServiceImpl.SNAPSHOT_INTERVAL;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * CellsMatrix.ofSnapshot(): снапшот + хвост истории должен давать ту же доску, что и проигрывание всей истории
+ * (CellsMatrix.ofHistory()) - для любой позиции и любого снапшота до нее.
+ * Партии - случайные легальные ходы (фиксированный seed), так что попадаются и рокировки, и взятия на проходе, и превращения.
+ */
+public class PositionSnapshotTests {
+
+    private static final int GAMES_COUNT = 20;
+    private static final int MAX_PLIES = 200;
+
+    @Test
+    public void ofSnapshot() {
+        Random random = new Random(42);
+
+        for (int gameIndex = 0; gameIndex < GAMES_COUNT; gameIndex++) {
+            List<History> history = playRandomGame(random);
+
+            for (int snapshotPosition = 0; snapshotPosition <= history.size(); snapshotPosition += SNAPSHOT_INTERVAL) {
+                CellsMatrix snapshotMatrix = CellsMatrix.ofHistory(snapshotPosition, history.subList(0, snapshotPosition));
+                PositionSnapshot snapshot = PositionSnapshot.of(0L, snapshotMatrix);
+
+                for (int position = snapshotPosition; position <= history.size(); position++) {
+                    CellsMatrix expected = CellsMatrix.ofHistory(position, history.subList(0, position));
+                    CellsMatrix actual = CellsMatrix.ofSnapshot(position, snapshot, history.subList(snapshotPosition, position));
+
+                    String message = "game #" + gameIndex + ", snapshot = " + snapshotPosition + ", position = " + position;
+                    assertEquals(message, expected.getPiecesKey(), actual.getPiecesKey());
+                    for (int rowIndex = 0; rowIndex < BOARD_SIZE; rowIndex++) {
+                        for (int columnIndex = 0; columnIndex < BOARD_SIZE; columnIndex++) {
+                            assertEquals(message, expected.getCell(rowIndex, columnIndex).getPiece(), actual.getCell(rowIndex, columnIndex).getPiece());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * История как ее пишет GameServiceImpl.applyMove(): history.position - позиция после хода
+     */
+    private static List<History> playRandomGame(Random random) {
+        List<History> history = new ArrayList<>();
+        CellsMatrix matrix = CellsMatrix.ofHistory(0, Collections.emptyList());
+        Game entity = new Game();
+        entity.clearFuturesMap();
+        FakeGame game = FakeGame.ofGame(entity);
+
+        for (int ply = 0; ply < MAX_PLIES; ply++) {
+            Side side = Side.getNextTurnSideByPosition(matrix.getPosition());
+            List<ExtendedMove> moves = MoveHelper.valueOf(game, matrix)
+                    .getStandardMovesStream(side)
+                    .collect(Collectors.toList());
+            if (moves.isEmpty()) {
+                break;
+            }
+
+            ExtendedMove move = moves.get(random.nextInt(moves.size()));
+            MoveDTO moveDTO = MoveDTO.valueOf(move.getPointFrom(), move.getPointTo(), move.isPawnTransformation() ? move.getPieceFromPawn() : null);
+
+            history.add(moveDTO.toHistory(0L, matrix.getPosition() + 1, move.getFrom().getPiece()));
+            game = game.executeMove(move, move.getFrom().getPiece());
+            matrix = matrix.executeMove(move);
+        }
+        return history;
+    }
+}
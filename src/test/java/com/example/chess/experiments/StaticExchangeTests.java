@@ -0,0 +1,72 @@
+package com.example.chess.experiments;
+
+import com.example.chess.enums.PieceType;
+import com.example.chess.enums.Side;
+import com.example.chess.logic.bitboard.StaticExchange;
+import com.example.chess.logic.objects.BitboardMatrix;
+import com.example.chess.logic.utils.CommonUtils;
+import org.junit.Test;
+
+import static com.example.chess.logic.bitboard.Bitboards.square;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * StaticExchange: размены, посчитанные вручную. Позиция (FEN) - уже после хода, начавшего размен,
+ * ходит сторона, которая может ответить взятием на той же клетке.
+ * <p>
+ * Стоимости: пешка 1, конь/слон 3, ладья 5, ферзь 9 (PieceType.getValue())
+ */
+public class StaticExchangeTests {
+
+    //ход, начавший размен, срубил пешку
+    private static final int PAWN_VALUE = PieceType.PAWN.getValue();
+
+    @Test
+    public void undefendedCapture() {
+        //Nxe5: пешку никто не защищал
+        assertExchange("4k3/8/8/4N3/8/8/8/4K3 b - - 0 1", "e5", new int[]{1}, 1);
+    }
+
+    @Test
+    public void plainRecapture() {
+        //Nxe5, dxe5: конь за пешку
+        assertExchange("4k3/8/3p4/4N3/8/8/8/4K3 b - - 0 1", "e5", new int[]{1, -2}, -2);
+    }
+
+    @Test
+    public void recaptureChain() {
+        //Rxd5, Qxd5, Rxd5, Rxd5 (ладья d8 - рентгеном за ферзем): пешка + ферзь за две ладьи = 0
+        assertExchange("3rk3/3q4/8/3R4/8/8/8/3RK3 b - - 0 1", "d5", new int[]{1, -4, 5, 0}, 0);
+    }
+
+    @Test
+    public void xRayBattery() {
+        //Nxd5, Rxd5, Rxd5, Rxd5, Qxd5: ферзь d1 подключается рентгеном из-за ладьи d3 и решает размен в пользу белых
+        assertExchange("3rk3/3r4/8/3N4/8/3R4/8/3QK3 b - - 0 1", "d5", new int[]{1, -2, 3, -2, 3}, 1);
+        //без ферзя черным выгодно рубить: белые остаются без коня за пешку
+        assertExchange("3rk3/3r4/8/3N4/8/3R4/8/4K3 b - - 0 1", "d5", new int[]{1, -2, 3, -2}, -2);
+    }
+
+    @Test
+    public void kingDoesNotRecaptureOnDefendedSquare() {
+        //Qxf7+: клетку защищает слон c4 - король ферзя не берет
+        assertExchange("4k3/5Q2/8/8/2B5/8/8/4K3 b - - 0 1", "f7", new int[]{1}, 1);
+        //без слона - берет
+        assertExchange("4k3/5Q2/8/8/8/8/8/4K3 b - - 0 1", "f7", new int[]{1, -8}, -8);
+    }
+
+    private static void assertExchange(String fen, String squareName, int[] expectedValues, int expectedResult) {
+        BitboardMatrix board = BitboardMatrix.of(Fen.parseMatrix(fen));
+        Side nextTurnSide = Fen.getNextTurnSide(fen);
+
+        int rowIndex = squareName.charAt(1) - '1';
+        int columnIndex = CommonUtils.nameToColumnIndex(squareName.substring(0, 1));
+        int square = square(rowIndex, columnIndex);
+
+        int[] values = StaticExchange.getExchangeValues(board, square, nextTurnSide, PAWN_VALUE);
+        assertArrayEquals(fen, expectedValues, values);
+        assertEquals(fen, expectedResult, StaticExchange.getExchangeResult(values));
+        assertEquals(fen, expectedResult, StaticExchange.evaluate(board, square, nextTurnSide, PAWN_VALUE));
+    }
+}